@@ -0,0 +1,70 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원을 조회하고 팀 이름까지 읽을 때 지연 로딩과 페치 조인 비교.
+ * 트랜잭션마다 영속성 컨텍스트가 새로 시작되므로 지연 로딩은 매번 팀 조회 쿼리가 추가로 나간다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FetchJoinBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private JPAQueryFactory queryFactory;
+    private TransactionTemplate transactionTemplate;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        transactionTemplate = context.transactionTemplate();
+    }
+
+    @Benchmark
+    public long lazyLoading() {
+        return transactionTemplate.execute(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .limit(ROWS)
+                    .fetch();
+            return touchTeams(members);
+        });
+    }
+
+    @Benchmark
+    public long fetchJoin() {
+        return transactionTemplate.execute(status -> {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .limit(ROWS)
+                    .fetch();
+            return touchTeams(members);
+        });
+    }
+
+    private static long touchTeams(List<Member> members) {
+        long length = 0;
+        for (Member m : members) {
+            length += m.getTeam().getName().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.repository.MemberJpaRepository;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 검색 조건 모양별 인덱스 효과. indexed=false 면 @Table 에 선언한 인덱스를 지우고 잰다.
+ * H2 는 idx_member_team_age 를 member.team_id 외래키 인덱스로 쓰므로 외래키를 지웠다가 다시 건다.
+ * 다시 걸면 H2 가 team_id 단일 인덱스를 새로 만든다. (MySQL 처럼 외래키 인덱스만 남는다)
+ * 셋업 때 H2 실행 계획(explain)을 info 로그로 남기므로 어떤 인덱스를 탔는지 같이 확인할 수 있다.
+ * 인덱스 차이는 members=1000000 에서 가장 잘 보인다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IndexBenchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexBenchmark.class);
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private MemberJpaRepository memberJpaRepository;
+    private MemberSearchCondition usernameCondition;
+    private MemberSearchCondition teamAgeCondition;
+    private MemberSearchCondition teamCondition;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        if (!indexed) {
+            jdbcTemplate.execute("drop index if exists idx_member_username");
+            List<String> teamForeignKeys = foreignKeys(jdbcTemplate, "MEMBER", "TEAM_ID");
+            for (String foreignKey : teamForeignKeys) {
+                jdbcTemplate.execute("alter table member drop constraint " + foreignKey);
+            }
+            jdbcTemplate.execute("drop index if exists idx_member_team_age");
+            for (String foreignKey : teamForeignKeys) {
+                jdbcTemplate.execute("alter table member add constraint " + foreignKey + " foreign key (team_id) references team");
+            }
+            jdbcTemplate.execute("drop index if exists idx_team_name");
+        }
+
+        usernameCondition = new MemberSearchCondition();
+        usernameCondition.setUsername("member" + (context.members / 2));
+
+        teamAgeCondition = new MemberSearchCondition();
+        teamAgeCondition.setTeamName("team3");
+        teamAgeCondition.setAgeGoe(30);
+        teamAgeCondition.setAgeLoe(31);
+
+        teamCondition = new MemberSearchCondition();
+        teamCondition.setTeamName("team3");
+
+        explain(jdbcTemplate, "select m.member_id from member m where m.username = 'member1'");
+        explain(jdbcTemplate, "select m.member_id from member m left join team t on m.team_id = t.id"
+                + " where t.name = 'team3' and m.age between 30 and 31");
+        explain(jdbcTemplate, "select t.id from team t where t.name = 'team3'");
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> usernameEq() {
+        return memberJpaRepository.search(usernameCondition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> teamNameAndAgeRange() {
+        return memberJpaRepository.search(teamAgeCondition);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> teamNameEq() {
+        return memberJpaRepository.search(teamCondition);
+    }
+
+    private void explain(JdbcTemplate jdbcTemplate, String sql) {
+        List<String> plan = jdbcTemplate.queryForList("explain " + sql, String.class);
+        log.info("[indexed={}] {}", indexed, String.join("\n", plan));
+    }
+
+    // 외래키 이름은 하이버네이트가 만든 해시라서 메타데이터로 찾는다.
+    private static List<String> foreignKeys(JdbcTemplate jdbcTemplate, String table, String column) {
+        return jdbcTemplate.execute((ConnectionCallback<List<String>>) connection -> {
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = connection.getMetaData().getImportedKeys(connection.getCatalog(), null, table)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("FKCOLUMN_NAME"))) {
+                        names.add(rs.getString("FK_NAME"));
+                    }
+                }
+            }
+            return names;
+        });
+    }
+}
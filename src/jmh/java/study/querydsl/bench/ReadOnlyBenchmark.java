@@ -0,0 +1,60 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 엔티티 조회시 읽기 전용 트랜잭션과 쓰기 트랜잭션의 메모리/시간 차이.
+ * 쓰기 트랜잭션은 엔티티마다 스냅샷을 만들고 커밋 때 전부 변경 감지를 한다.
+ * gc.alloc.rate.norm (연산당 할당 바이트)로 비교한다.
+ * <p>
+ * {@link study.querydsl.repository.support.ReadOnlyQuery} 힌트는 쓰기 트랜잭션 안에서는 걸리지 않으므로(고친 값이 반영돼야 한다)
+ * 쓰기 트랜잭션 + 힌트는 따로 재지 않는다. 읽기 전용 트랜잭션은 힌트 없이도 세션 전체가 읽기 전용이다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadOnlyBenchmark {
+
+    private static final int LIMIT = 10_000;
+
+    private EntityManager em;
+    private TransactionTemplate writeTransaction;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        em = context.getBean(EntityManager.class);
+        writeTransaction = context.transactionTemplate();
+        readOnlyTransaction = context.transactionTemplate();
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Benchmark
+    public int writeTransaction() {
+        return writeTransaction.execute(status -> load().size());
+    }
+
+    @Benchmark
+    public int readOnlyTransaction() {
+        return readOnlyTransaction.execute(status -> load().size());
+    }
+
+    private List<Member> load() {
+        return new JPAQueryFactory(em).selectFrom(member).limit(LIMIT).fetch();
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.bench;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.repository.MemberTeamQuerySpec;
+import study.querydsl.repository.TeamNameDictionary;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 팀 이름 조건을 team 조인 + team.name 으로 거를 때와, 사전으로 id 를 찾아 member.team_id 로 거를 때 비교.
+ * 팀 수(teams)가 많을수록 team.name 비교 + 조인 비용이 커진다. 회원은 teams 개 팀에 고르게 나눈다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TeamDictionaryBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int teams;
+
+    private JPAQueryFactory queryFactory;
+    private TeamNameDictionary teamNameDictionary;
+    private TransactionTemplate readOnlyTransaction;
+    private MemberSearchCondition condition;
+
+    @Setup
+    public void setUp(BenchmarkContext context) {
+        redistribute(context);
+        queryFactory = new JPAQueryFactory(context.getBean(EntityManager.class));
+        teamNameDictionary = context.getBean(TeamNameDictionary.class);
+        teamNameDictionary.invalidate(); // JDBC 로 바꿨으므로 이벤트가 없다.
+        teamNameDictionary.reload(); // 측정 중에 뒤에서 읽지 않게 미리 읽는다.
+        readOnlyTransaction = context.transactionTemplate();
+        readOnlyTransaction.setReadOnly(true);
+        condition = new MemberSearchCondition();
+        condition.setTeamName("team3");
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(31);
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> contentByTeamName() {
+        return readOnlyTransaction.execute(status -> MemberTeamQuerySpec.contentQuery(queryFactory, condition).fetch());
+    }
+
+    @Benchmark
+    public List<MemberTeamDTO> contentByTeamId() {
+        return readOnlyTransaction.execute(status -> MemberTeamQuerySpec.contentQuery(queryFactory, condition,
+                teamNameDictionary.resolve(condition.getTeamName())).fetch());
+    }
+
+    @Benchmark
+    public Long countByTeamName() {
+        return readOnlyTransaction.execute(status -> MemberTeamQuerySpec.countQuery(queryFactory, condition).fetchOne());
+    }
+
+    // 조인 없는 카운트
+    @Benchmark
+    public Long countByTeamId() {
+        return readOnlyTransaction.execute(status -> MemberTeamQuerySpec.countQuery(queryFactory, condition,
+                teamNameDictionary.resolve(condition.getTeamName())).fetchOne());
+    }
+
+    // BenchmarkContext 는 팀 10개로 채우므로 나머지 팀을 넣고 회원을 다시 나눈다.
+    private void redistribute(BenchmarkContext context) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        int existing = jdbcTemplate.queryForObject("select count(*) from team", Integer.class);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = existing; i < teams; i++) {
+            batch.add(new Object[]{(long) i + 1, "team" + i});
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into team (id, name) values (?, ?)", batch);
+        }
+        jdbcTemplate.update("update member set team_id = mod(member_id - 1, ?) + 1", teams);
+    }
+}
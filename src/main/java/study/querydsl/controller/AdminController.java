@@ -0,0 +1,85 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.monitor.SlowQuery;
+import study.querydsl.monitor.SlowQueryLog;
+import study.querydsl.repository.MemberMemoryIndex;
+import study.querydsl.repository.MemberSearchQueryCache;
+import study.querydsl.repository.MemberSnapshot;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 운영 중 내부 상태 확인용
+@RestController
+@RequiredArgsConstructor
+public class AdminController {
+    private final MemberSearchQueryCache memberSearchQueryCache;
+    private final EntityManagerFactory emf;
+    private final SlowQueryLog slowQueryLog;
+    private final MemberMemoryIndex memberMemoryIndex;
+    private final MemberSnapshot memberSnapshot;
+
+    @GetMapping("/admin/query-templates")
+    public MemberSearchQueryCache.Stats queryTemplates() {
+        return memberSearchQueryCache.getStats();
+    }
+
+    // 2차 캐시 리전별 적중/미스 (querydsl.l2-cache.enabled=true 일 때만 집계된다)
+    @GetMapping("/admin/l2-cache")
+    public Map<String, Object> secondLevelCache() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Long> regionStats = new LinkedHashMap<>();
+            regionStats.put("hitCount", region.getHitCount());
+            regionStats.put("missCount", region.getMissCount());
+            regionStats.put("putCount", region.getPutCount());
+            regionStats.put("elementCountInMemory", region.getElementCountInMemory());
+            regions.put(regionName, regionStats);
+        }
+        result.put("regions", regions);
+        return result;
+    }
+
+    // 회원 메모리 인덱스 크기 (querydsl.member-index.enabled)
+    @GetMapping("/admin/member-index")
+    public MemberMemoryIndex.Stats memberIndex() {
+        return memberMemoryIndex.getStats();
+    }
+
+    // off-heap 회원 스냅샷 크기, 마지막으로 만든 시각 (querydsl.snapshot.enabled)
+    @GetMapping("/admin/member-snapshot")
+    public MemberSnapshot.Stats memberSnapshot() {
+        return memberSnapshot.getStats();
+    }
+
+    // 최근 느린 쿼리 (querydsl.sql-log.slow-threshold-millis 이상)
+    @GetMapping("/admin/slow-queries")
+    public Map<String, Object> slowQueries() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("slowThresholdMillis", slowQueryLog.getSlowThresholdMillis());
+        result.put("sampleRate", slowQueryLog.getSampleRate());
+        result.put("recordedCount", slowQueryLog.getRecordedCount());
+        result.put("droppedCount", slowQueryLog.getDroppedCount());
+        List<SlowQuery> queries = slowQueryLog.recent();
+        result.put("queries", queries);
+        return result;
+    }
+}
@@ -3,33 +3,96 @@ package study.querydsl.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import study.querydsl.dto.MemberDashboardDTO;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamSliceDTO;
+import study.querydsl.repository.MemberDashboardRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
+    private static final int MAX_SLICE_SIZE = 1000;
+
     private final MemberJpaRepository memberJpaRepository;
     private final MemberRepository memberRepository;
+    private final MemberExporter memberExporter;
+    private final MemberQueryExecutor memberQueryExecutor;
+    private final MemberDashboardRepository memberDashboardRepository;
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDTO> searchMemberV1(MemberSearchCondition condition) {
-        return memberJpaRepository.search(condition);
+    public CompletableFuture<List<MemberTeamDTO>> searchMemberV1(MemberSearchCondition condition) {
+        return memberQueryExecutor.submit(() -> memberJpaRepository.search(condition));
+    }
+
+    // /v1/members 와 같은 검색을 전체 결과를 메모리에 올리지 않고 스트리밍으로 내려준다.
+    @GetMapping("/v1/members/export")
+    public ResponseEntity<StreamingResponseBody> exportMemberV1(MemberSearchCondition condition,
+                                                               @RequestParam(defaultValue = "ndjson") String format) {
+        MemberExporter.Format exportFormat = MemberExporter.Format.from(format);
+        StreamingResponseBody body = out -> memberExporter.export(condition, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(exportFormat.getMediaType())
+                .body(body);
     }
 
     @GetMapping("/v2/members")
-    public Page<MemberTeamDTO> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageSimple(condition, pageable);
+    public CompletableFuture<Page<MemberTeamDTO>> searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
+        return memberQueryExecutor.submit(() -> memberRepository.searchPageSimple(condition, pageable));
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDTO> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return memberRepository.searchPageComplex(condition, pageable);
+    public CompletableFuture<Page<MemberTeamDTO>> searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
+        return memberQueryExecutor.submit(() -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    // /v3/members 와 같은 검색. count=exact|slice|bounded|estimated 로 total 을 구하는 방법을 고른다.
+    @GetMapping("/v5/members")
+    public CompletableFuture<CountedPage<MemberTeamDTO>> searchMemberV5(MemberSearchCondition condition, Pageable pageable,
+                                                                        @RequestParam(defaultValue = "slice") String count) {
+        CountStrategy strategy = CountStrategy.from(count);
+        return memberQueryExecutor.submit(() -> memberRepository.searchPageCounted(condition, pageable, strategy));
+    }
+
+    // 무한 스크롤용. 응답의 nextCursor를 다음 요청의 cursor로 넘긴다.
+    @GetMapping("/v4/members")
+    public MemberTeamSliceDTO searchMemberV4(MemberSearchCondition condition,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "20") int size) {
+        return memberRepository.searchSlice(condition, cursor, Math.min(size, MAX_SLICE_SIZE));
+    }
+
+    // 검색 결과, 전체 건수, 팀별 통계를 동시에 조회한다. 일부가 실패하면 failed 에 이름이 들어간다.
+    @GetMapping("/v1/members/dashboard")
+    public CompletableFuture<MemberDashboardDTO> dashboardV1(MemberSearchCondition condition, Pageable pageable) {
+        return memberQueryExecutor.submit(() -> memberDashboardRepository.dashboard(condition, pageable));
+    }
+
+    // 검색 풀과 대기 큐가 모두 찼다. 잠시 후 다시 시도하도록 알려준다.
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> overloaded(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body("Too many concurrent searches");
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 }
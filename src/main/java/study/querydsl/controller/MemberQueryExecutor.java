@@ -0,0 +1,53 @@
+package study.querydsl.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 검색 API 를 톰캣 요청 스레드가 아닌 별도 풀에서 실행한다. (querydsl.async.enabled=true)
+ * <p>
+ * 풀 크기는 커넥션 풀(hikari) 크기와 같다. 어차피 커넥션 수 이상은 동시에 쿼리를 못하므로,
+ * 그 이상은 큐에서 기다리고 큐도 가득 차면 바로 거절(503)해서 느린 쿼리가 요청 스레드를 잡아먹지 못하게 한다.
+ * 자바 11 이라 가상 스레드는 쓸 수 없어 전용 풀을 쓴다.
+ * <p>
+ * 비활성이면 요청 스레드에서 바로 실행하고 완료된 future 를 돌려준다.
+ */
+@Component
+public class MemberQueryExecutor {
+
+    private final ThreadPoolTaskExecutor executor; // 비활성이면 null
+
+    public MemberQueryExecutor(@Value("${querydsl.async.enabled:false}") boolean enabled,
+                               @Value("${spring.datasource.hikari.maximum-pool-size:10}") int connectionPoolSize,
+                               @Value("${querydsl.async.queue-capacity:100}") int queueCapacity) {
+        if (enabled) {
+            executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(connectionPoolSize);
+            executor.setMaxPoolSize(connectionPoolSize);
+            executor.setQueueCapacity(queueCapacity); // 가득 차면 TaskRejectedException
+            executor.setThreadNamePrefix("member-query-");
+            executor.initialize();
+        } else {
+            executor = null;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> query) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(query.get());
+        }
+        return CompletableFuture.supplyAsync(query, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.TeamAgeStatsDTO;
+import study.querydsl.dto.TeamMembersDTO;
+import study.querydsl.repository.TeamAgeStatsCache;
+import study.querydsl.repository.TeamQueryRepository;
+
+import java.util.List;
+
+@RestController
+@RequiredArgsConstructor
+public class TeamController {
+    private final TeamQueryRepository teamQueryRepository;
+    private final TeamAgeStatsCache teamAgeStatsCache;
+
+    @GetMapping("/v1/teams")
+    public List<TeamMembersDTO> teamsWithMembers(Pageable pageable) {
+        return teamQueryRepository.findTeamsWithMembers(pageable);
+    }
+
+    // 팀별 나이 통계. 메모리에 유지하는 값이라 DB 를 타지 않는다.
+    @GetMapping("/v1/teams/age-stats")
+    public List<TeamAgeStatsDTO> teamAgeStats() {
+        return teamAgeStatsCache.findAll();
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * 읽기 전용 트랜잭션은 레플리카, 나머지는 프라이머리로 보낸다.
+ * <p>
+ * 트랜잭션 시작 시점에는 아직 readOnly 여부가 설정되기 전이라 반드시 LazyConnectionDataSourceProxy 로 감싸서
+ * 첫 쿼리를 실행할 때 커넥션을 고르도록 해야 한다.
+ * 쓰기 트랜잭션에 참여한 readOnly 메서드는 바깥 트랜잭션 그대로(프라이머리)다.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter writeCounter;
+    private final Counter readCounter;
+    private final Counter fallbackCounter;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor, MeterRegistry registry) {
+        this.lagMonitor = lagMonitor;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.writeCounter = counter(registry, PRIMARY, "write");
+        this.readCounter = counter(registry, REPLICA, "read");
+        this.fallbackCounter = counter(registry, PRIMARY, "fallback"); // 레플리카 지연/장애로 프라이머리에서 읽음
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            increment(writeCounter);
+            return PRIMARY;
+        }
+        if (!lagMonitor.isReplicaUsable()) {
+            increment(fallbackCounter);
+            return PRIMARY;
+        }
+        increment(readCounter);
+        return REPLICA;
+    }
+
+    private static Counter counter(MeterRegistry registry, String route, String reason) {
+        if (registry == null) {
+            return null;
+        }
+        return Counter.builder("querydsl.datasource.route")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 레플리카 상태 확인. 연결이 안되거나 지연이 maxLagMillis 를 넘으면 읽기도 프라이머리로 보낸다.
+ * <p>
+ * lagQuery 는 레플리카 지연을 밀리초로 돌려주는 쿼리다. 비어 있으면 연결만 확인한다.
+ * 예) PostgreSQL: select extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000
+ */
+@Slf4j
+public class ReplicaLagMonitor implements AutoCloseable {
+
+    private final DataSource replica;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean replicaUsable;
+    private volatile long lastLagMillis = -1;
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagMillis) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public void start(long intervalMillis) {
+        check();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void check() {
+        boolean usable;
+        try (Connection connection = replica.getConnection()) {
+            if (StringUtils.hasText(lagQuery)) {
+                lastLagMillis = queryLag(connection);
+                usable = lastLagMillis <= maxLagMillis;
+            } else {
+                lastLagMillis = 0;
+                usable = connection.isValid(1);
+            }
+        } catch (Exception e) {
+            lastLagMillis = -1;
+            usable = false;
+            log.debug("replica check failed", e);
+        }
+        if (usable != replicaUsable) {
+            log.warn("replica {} (lag={}ms)", usable ? "usable" : "unusable -> primary 로 읽기", lastLagMillis);
+        }
+        replicaUsable = usable;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    // 연결 실패면 -1
+    public long getLastLagMillis() {
+        return lastLagMillis;
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private long queryLag(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return 0;
+            }
+            double lag = rs.getDouble(1);
+            return rs.wasNull() ? 0 : (long) lag; // 복제 이력이 없으면 null 인 DB 가 있다.
+        }
+    }
+}
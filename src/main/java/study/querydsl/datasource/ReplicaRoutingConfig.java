@@ -0,0 +1,81 @@
+package study.querydsl.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * 읽기/쓰기 데이터소스 분리 (querydsl.replica.enabled=true 일 때만)
+ * <p>
+ * 프라이머리, 레플리카 각각 히카리 풀을 두고 풀 이름(primary, replica)으로 hikaricp.* 지표가 따로 나온다.
+ * 로컬에서는 레플리카 url 을 따로 주지 않으면 프라이머리와 같은 DB 를 다른 풀로 본다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "querydsl.replica.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("querydsl.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${querydsl.replica.url:${spring.datasource.url}}") String url,
+                                              @Value("${querydsl.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${querydsl.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(ReadWriteRoutingDataSource.REPLICA);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${querydsl.replica.lag-query:}") String lagQuery,
+                                               @Value("${querydsl.replica.max-lag-millis:1000}") long maxLagMillis,
+                                               @Value("${querydsl.replica.check-interval-millis:1000}") long intervalMillis,
+                                               ObjectProvider<MeterRegistry> registry) {
+        ReplicaLagMonitor lagMonitor = new ReplicaLagMonitor(replica, lagQuery, maxLagMillis);
+        lagMonitor.start(intervalMillis);
+        registry.ifAvailable(meterRegistry -> {
+            Gauge.builder("querydsl.replica.lag", lagMonitor, ReplicaLagMonitor::getLastLagMillis)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("querydsl.replica.usable", lagMonitor, monitor -> monitor.isReplicaUsable() ? 1 : 0)
+                    .register(meterRegistry);
+        });
+        return lagMonitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor,
+                                 ObjectProvider<MeterRegistry> registry) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica, lagMonitor, registry.getIfAvailable());
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
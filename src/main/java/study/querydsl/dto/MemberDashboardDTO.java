@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// 회원 대시보드. 실패한 항목은 null 이고 failed 에 이름이 들어간다.
+@Data
+public class MemberDashboardDTO {
+    private List<MemberTeamDTO> content;
+    private Long total;
+    private List<TeamAgeStatsDTO> teamStats;
+    private List<String> failed;
+
+    public MemberDashboardDTO(List<MemberTeamDTO> content, Long total, List<TeamAgeStatsDTO> teamStats, List<String> failed) {
+        this.content = content;
+        this.total = total;
+        this.teamStats = teamStats;
+        this.failed = failed;
+    }
+}
@@ -0,0 +1,19 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * 대량 적재용 입력 한 줄. 팀은 이름으로 찾고 없으면 만든다.
+ */
+@Data
+public class MemberRow {
+    private String username;
+    private int age;
+    private String teamName; // null 이면 팀 없음
+
+    public MemberRow(String username, int age, String teamName) {
+        this.username = username;
+        this.age = age;
+        this.teamName = teamName;
+    }
+}
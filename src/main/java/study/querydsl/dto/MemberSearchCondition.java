@@ -2,6 +2,10 @@ package study.querydsl.dto;
 
 import lombok.Data;
 
+import java.util.Set;
+
+import static org.springframework.util.StringUtils.hasText;
+
 @Data
 public class MemberSearchCondition {
     // 회원명, 팀명, 나이 (ageGoe, ageLoe)
@@ -11,5 +15,21 @@ public class MemberSearchCondition {
     private Integer ageGoe;
     private Integer ageLoe;
 
+    // 결과에 필요한 필드만 select 한다. 비어 있으면 전부. (조건이 아니라서 normalize 에는 넣지 않는다)
+    private Set<MemberTeamField> fields;
+
+    public int fieldMask() {
+        return MemberTeamField.mask(fields);
+    }
 
+    // 검색 결과가 같은 조건은 같은 값이 되도록 정리한다. (카운트 캐시 키 등에 사용)
+    // 빈 문자열은 조건이 없는 것과 같게 처리된다.
+    public MemberSearchCondition normalize() {
+        MemberSearchCondition normalized = new MemberSearchCondition();
+        normalized.setUsername(hasText(username) ? username : null);
+        normalized.setTeamName(hasText(teamName) ? teamName : null);
+        normalized.setAgeGoe(ageGoe);
+        normalized.setAgeLoe(ageLoe);
+        return normalized;
+    }
 }
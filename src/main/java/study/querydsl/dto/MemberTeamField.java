@@ -0,0 +1,32 @@
+package study.querydsl.dto;
+
+import java.util.Collection;
+
+/**
+ * 검색 결과(MemberTeamDTO)에서 고를 수 있는 필드. 검색 조건의 fields 로 넘긴다. 예) ?fields=USERNAME,AGE
+ * 비어 있으면 전부.
+ */
+public enum MemberTeamField {
+    MEMBER_ID, USERNAME, AGE, TEAM_ID, TEAM_NAME;
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public boolean in(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    public static int mask(Collection<MemberTeamField> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return ALL;
+        }
+        int mask = 0;
+        for (MemberTeamField field : fields) {
+            mask |= field.bit();
+        }
+        return mask;
+    }
+}
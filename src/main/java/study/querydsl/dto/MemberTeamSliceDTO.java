@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class MemberTeamSliceDTO {
+    private List<MemberTeamDTO> content;
+    private String nextCursor; // 다음 페이지 요청시 그대로 넘겨주면 된다. 마지막 페이지면 null
+    private boolean hasNext;
+
+    public MemberTeamSliceDTO(List<MemberTeamDTO> content, String nextCursor, boolean hasNext) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+}
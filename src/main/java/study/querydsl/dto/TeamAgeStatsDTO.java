@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 팀별 회원 나이 통계 (count, sum, avg, max, min)
+@Data
+@NoArgsConstructor
+public class TeamAgeStatsDTO {
+    private String teamName;
+    private long count;
+    private long sum;
+    private double avg;
+    private int max;
+    private int min;
+
+    public TeamAgeStatsDTO(String teamName, long count, long sum, double avg, int max, int min) {
+        this.teamName = teamName;
+        this.count = count;
+        this.sum = sum;
+        this.avg = avg;
+        this.max = max;
+        this.min = min;
+    }
+}
@@ -0,0 +1,13 @@
+package study.querydsl.entity;
+
+/**
+ * 변경 전/후 값을 알려주는 엔티티. {@link EntityChangedEvent} 에 두 값이 복사되어 실린다.
+ * 집계처럼 차이(delta)만 반영하려는 구독자가 쓴다.
+ */
+public interface ChangeTracked {
+
+    // 마지막으로 DB 와 맞춘 값. 아직 저장 안된 엔티티면 null
+    Object getLoadedState();
+
+    Object currentState();
+}
@@ -0,0 +1,62 @@
+package study.querydsl.entity;
+
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * 하이버네이트가 스프링 빈 컨테이너(SpringBeanContainer)로 생성하므로 생성자 주입이 된다.
+ * <p>
+ * 대량 적재처럼 엔티티마다 이벤트를 낼 필요가 없으면 {@link #withoutEvents(Runnable)} 로 감싸고 끝나고
+ * {@link EntityChangedEvent#bulk(Class)} 를 한 번 발행한다.
+ */
+public class EntityChangeListener {
+
+    private static final ThreadLocal<Boolean> SUPPRESSED = ThreadLocal.withInitial(() -> false);
+
+    private final ApplicationEventPublisher publisher;
+
+    public EntityChangeListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * 현재 스레드에서 action 을 실행하는 동안 엔티티 이벤트를 내지 않는다.
+     * 커밋 후 리스너(AFTER_COMMIT)가 엔티티마다 등록되지 않으므로 flush/clear 한 엔티티가 커밋 때까지 남지 않는다.
+     */
+    public static void withoutEvents(Runnable action) {
+        boolean previous = SUPPRESSED.get();
+        SUPPRESSED.set(true);
+        try {
+            action.run();
+        } finally {
+            SUPPRESSED.set(previous);
+        }
+    }
+
+    @PostPersist
+    public void postPersist(Object entity) {
+        if (SUPPRESSED.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.PERSIST));
+    }
+
+    @PostUpdate
+    public void postUpdate(Object entity) {
+        if (SUPPRESSED.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.UPDATE));
+    }
+
+    @PostRemove
+    public void postRemove(Object entity) {
+        if (SUPPRESSED.get()) {
+            return;
+        }
+        publisher.publishEvent(new EntityChangedEvent(entity, EntityChangedEvent.Type.REMOVE));
+    }
+}
@@ -0,0 +1,55 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.hibernate.Hibernate;
+
+/**
+ * 엔티티 변경 알림. 캐시 무효화 같은 부가 기능들이 이 이벤트를 구독한다.
+ * 벌크 연산(JPQL update/delete)은 엔티티 리스너를 타지 않으므로 직접 {@link #bulk(Class)}를 발행해야 한다.
+ * {@link ChangeTracked} 엔티티는 발행 시점의 변경 전/후 값이 같이 실린다. (커밋 후에 처리해도 값이 섞이지 않도록 복사해둔다)
+ */
+@Getter
+@ToString
+public class EntityChangedEvent {
+
+    public enum Type {
+        PERSIST, UPDATE, REMOVE, BULK
+    }
+
+    private final Class<?> entityType;
+    private final Object entity; // BULK이면 null
+    private final Type type;
+    private final Object previousState; // PERSIST, BULK 이면 null
+    private final Object currentState; // REMOVE, BULK 이면 null
+
+    public EntityChangedEvent(Object entity, Type type) {
+        this.entityType = Hibernate.getClass(entity);
+        this.entity = entity;
+        this.type = type;
+        if (entity instanceof ChangeTracked) {
+            ChangeTracked tracked = (ChangeTracked) entity;
+            this.previousState = type == Type.PERSIST ? null : tracked.getLoadedState();
+            this.currentState = type == Type.REMOVE ? null : tracked.currentState();
+        } else {
+            this.previousState = null;
+            this.currentState = null;
+        }
+    }
+
+    private EntityChangedEvent(Class<?> entityType) {
+        this.entityType = entityType;
+        this.entity = null;
+        this.type = Type.BULK;
+        this.previousState = null;
+        this.currentState = null;
+    }
+
+    public static EntityChangedEvent bulk(Class<?> entityType) {
+        return new EntityChangedEvent(entityType);
+    }
+
+    public boolean isAbout(Class<?> type) {
+        return type.isAssignableFrom(entityType);
+    }
+}
@@ -1,18 +1,28 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = { // MemberSearchCondition 검색 모양에 맞춘 인덱스 (시작시 SchemaIndexVerifier 가 확인)
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_team_age", columnList = "team_id, age") // 팀 + 나이 범위. team_id 만으로도 쓴다.
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "member") // querydsl.l2-cache.enabled 일 때만 동작
+@EntityListeners(EntityChangeListener.class)
 @Getter
 @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"}) // team 들어가면 안됨. 무한루프 돈다.
-public class Member {
+public class Member implements ChangeTracked {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "member_seq_generator")
+    @SequenceGenerator(name = "member_seq_generator", sequenceName = "member_seq", allocationSize = 50) // 50개씩 미리 할당 (pooled)
     @Column(name = "member_id")
     private Long id;
     private String username;
@@ -22,6 +32,10 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    @Transient
+    @Setter(AccessLevel.NONE)
+    private MemberAgeState loadedState; // 마지막으로 DB 와 맞춘 팀/나이 (TeamAgeStatsCache 증분 갱신용)
+
     public Member(String username) {
         this(username, 0);
     }
@@ -43,4 +57,17 @@ public class Member {
         team.getMembers().add(this);
     }
 
+    @Override
+    public MemberAgeState currentState() {
+        return new MemberAgeState(team != null ? team.getId() : null, age); // 프록시 id 조회는 초기화하지 않는다.
+    }
+
+    // 엔티티 리스너(EntityChangeListener)가 먼저 호출되므로 이벤트에는 바뀌기 전 값이 실린다.
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    private void syncLoadedState() {
+        this.loadedState = currentState();
+    }
+
 }
@@ -0,0 +1,17 @@
+package study.querydsl.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+// 팀별 나이 집계에 필요한 회원 값. 불변
+@Getter
+@ToString
+public class MemberAgeState {
+    private final Long teamId; // 팀이 없으면 null
+    private final int age;
+
+    public MemberAgeState(Long teamId, int age) {
+        this.teamId = teamId;
+        this.age = age;
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.monitor;
+
+import org.hibernate.HibernateException;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+
+/**
+ * 지연 로딩 감지.
+ * - 프록시 초기화(예: member.getTeam().getName())는 IMMEDIATE_LOAD 로 로드 이벤트가 발생한다.
+ * - 컬렉션 초기화(예: team.getMembers() 순회)는 컬렉션 초기화 이벤트가 발생한다.
+ */
+public class LazyLoadListener implements LoadEventListener, InitializeCollectionEventListener {
+
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        if (loadType == LoadEventListener.IMMEDIATE_LOAD) {
+            SqlMonitor.onLazyLoad(simpleName(event.getEntityClassName()) + " proxy");
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) throws HibernateException {
+        SqlMonitor.onLazyLoad(simpleName(event.getCollection().getRole()));
+    }
+
+    // study.querydsl.entity.Team.members -> Team.members
+    private static String simpleName(String qualifiedName) {
+        int entityStart = qualifiedName.lastIndexOf('.', qualifiedName.lastIndexOf('.') - 1);
+        String name = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+        if (Character.isUpperCase(name.charAt(0))) { // 엔티티 이름
+            return name;
+        }
+        return qualifiedName.substring(entityStart + 1); // 컬렉션 role
+    }
+}
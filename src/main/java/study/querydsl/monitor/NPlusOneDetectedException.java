@@ -0,0 +1,7 @@
+package study.querydsl.monitor;
+
+public class NPlusOneDetectedException extends RuntimeException {
+    public NPlusOneDetectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.monitor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberSearchQueryCache;
+
+// 검색 JPQL 템플릿 캐시 적중률
+@Component
+public class QueryTemplateMetrics implements MeterBinder {
+
+    private final MemberSearchQueryCache searchQueryCache;
+
+    public QueryTemplateMetrics(MemberSearchQueryCache searchQueryCache) {
+        this.searchQueryCache = searchQueryCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("querydsl.search.template", searchQueryCache, cache -> cache.getStats().getHits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("querydsl.search.template", searchQueryCache, cache -> cache.getStats().getMisses())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("querydsl.search.template.saved", searchQueryCache, cache -> cache.getStats().getSavedNanos())
+                .baseUnit("nanoseconds")
+                .register(registry);
+    }
+}
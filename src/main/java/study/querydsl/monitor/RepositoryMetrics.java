@@ -0,0 +1,108 @@
+package study.querydsl.monitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.MemberTeamQuerySpec;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 리포지토리 쿼리 지표. 비활성(querydsl.metrics.enabled=false)이면 기록 메서드가 바로 반환한다.
+ * <p>
+ * - querydsl.repository.query : 메서드별, 검색 조건 모양별 실행 시간 (histogram)
+ * - querydsl.repository.rows : 반환 건수
+ * - querydsl.page.content / querydsl.page.count : 페이징 쿼리의 콘텐츠, 카운트 시간을 나눠서
+ * - querydsl.page.count.cache : 카운트 캐시 적중 여부
+ * 커넥션 대기 시간은 스프링 부트가 등록하는 hikaricp.connections.acquire 를 보면 된다.
+ */
+@Component
+public class RepositoryMetrics {
+
+    private final MeterRegistry registry; // 비활성이면 null
+
+    @Autowired
+    public RepositoryMetrics(ObjectProvider<MeterRegistry> registry,
+                             @Value("${querydsl.metrics.enabled:true}") boolean enabled) {
+        this.registry = enabled ? registry.getIfAvailable() : null;
+    }
+
+    private RepositoryMetrics() {
+        this.registry = null;
+    }
+
+    public static RepositoryMetrics disabled() {
+        return new RepositoryMetrics();
+    }
+
+    public boolean isEnabled() {
+        return registry != null;
+    }
+
+    public void recordQuery(String repository, String method, String shape, String outcome, long nanos, long rows) {
+        if (registry == null) {
+            return;
+        }
+        Timer.builder("querydsl.repository.query")
+                .tag("repository", repository)
+                .tag("method", method)
+                .tag("shape", shape)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            DistributionSummary.builder("querydsl.repository.rows")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .register(registry)
+                    .record(rows);
+        }
+    }
+
+    public void recordPageContent(long nanos) {
+        if (registry != null) {
+            registry.timer("querydsl.page.content").record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordPageCount(long nanos) {
+        if (registry != null) {
+            registry.timer("querydsl.page.count").record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordCountCache(boolean hit) {
+        if (registry != null) {
+            registry.counter("querydsl.page.count.cache", "result", hit ? "hit" : "miss").increment();
+        }
+    }
+
+    // 지표 태그용 검색 조건 모양. 예) username+ageGoe, 조건이 없으면 none
+    public static String shapeTag(MemberSearchCondition condition) {
+        if (condition == null) {
+            return "none";
+        }
+        int shape = MemberTeamQuerySpec.shape(condition);
+        StringJoiner joiner = new StringJoiner("+");
+        if ((shape & MemberTeamQuerySpec.USERNAME) != 0) {
+            joiner.add("username");
+        }
+        if ((shape & MemberTeamQuerySpec.TEAM_NAME) != 0) {
+            joiner.add("teamName");
+        }
+        if ((shape & MemberTeamQuerySpec.AGE_GOE) != 0) {
+            joiner.add("ageGoe");
+        }
+        if ((shape & MemberTeamQuerySpec.AGE_LOE) != 0) {
+            joiner.add("ageLoe");
+        }
+        return shape == 0 ? "none" : joiner.toString();
+    }
+}
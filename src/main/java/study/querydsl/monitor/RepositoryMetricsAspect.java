@@ -0,0 +1,72 @@
+package study.querydsl.monitor;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamSliceDTO;
+
+import java.util.Collection;
+
+/**
+ * 검색 메서드(search*) 실행 시간과 반환 건수를 기록한다.
+ * 지표를 끄면 이 빈 자체가 등록되지 않아 프록시 비용도 없다.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "querydsl.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class RepositoryMetricsAspect {
+
+    private final RepositoryMetrics metrics;
+
+    public RepositoryMetricsAspect(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 스프링 데이터 리포지토리 프록시와 구현체(MemberRepositoryImpl)가 둘 다 걸리지 않도록 구현 클래스 기준으로 잡는다.
+    @Around("execution(* study.querydsl.repository.MemberRepositoryImpl.search*(..))"
+            + " || execution(* study.querydsl.repository.MemberJpaRepository.search*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!metrics.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        String repository = joinPoint.getSignature().getDeclaringType().getSimpleName();
+        String method = joinPoint.getSignature().getName();
+        String shape = RepositoryMetrics.shapeTag(findCondition(joinPoint.getArgs()));
+
+        long start = System.nanoTime();
+        try {
+            Object result = joinPoint.proceed();
+            metrics.recordQuery(repository, method, shape, "success", System.nanoTime() - start, rows(result));
+            return result;
+        } catch (Throwable e) {
+            metrics.recordQuery(repository, method, shape, "error", System.nanoTime() - start, -1);
+            throw e;
+        }
+    }
+
+    private static MemberSearchCondition findCondition(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof MemberSearchCondition) {
+                return (MemberSearchCondition) arg;
+            }
+        }
+        return null;
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof MemberTeamSliceDTO) {
+            return ((MemberTeamSliceDTO) result).getContent().size();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,118 @@
+package study.querydsl.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 엔티티 @Table(indexes) 에 선언한 인덱스가 실제 스키마에 있는지 시작할 때 확인한다.
+ * ddl-auto 를 안쓰는 운영 DB 에서 마이그레이션이 빠진 경우를 잡기 위한 것이라 경고만 남긴다.
+ * 같은 컬럼 순서로 시작하는 인덱스가 있으면 이름이 달라도 있는 것으로 본다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "querydsl.schema.verify-indexes", havingValue = "true", matchIfMissing = true)
+public class SchemaIndexVerifier {
+
+    private final EntityManagerFactory emf;
+    private final DataSource dataSource;
+
+    public SchemaIndexVerifier(EntityManagerFactory emf, DataSource dataSource) {
+        this.emf = emf;
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        for (String missing : findMissingIndexes()) {
+            log.warn("missing index {} - 검색 쿼리가 전체 스캔을 할 수 있습니다.", missing);
+        }
+    }
+
+    /**
+     * @return 없는 인덱스 목록. 예) member.idx_member_username(username)
+     */
+    public List<String> findMissingIndexes() {
+        List<String> missing = new ArrayList<>();
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (EntityType<?> entity : emf.getMetamodel().getEntities()) {
+                Table table = entity.getJavaType().getAnnotation(Table.class);
+                if (table == null || table.indexes().length == 0) {
+                    continue;
+                }
+                EntityPersister persister = sessionFactory.getMetamodel().entityPersister(entity.getJavaType());
+                String tableName = ((AbstractEntityPersister) persister).getTableName();
+                List<List<String>> actual = indexColumns(metaData, connection.getCatalog(), tableName);
+                for (Index index : table.indexes()) {
+                    List<String> expected = columns(index.columnList());
+                    if (actual.stream().noneMatch(columns -> startsWith(columns, expected))) {
+                        missing.add(tableName + "." + index.name() + expected);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("인덱스 확인 실패", e);
+        }
+        return missing;
+    }
+
+    // DB 마다 식별자 대소문자 저장 방식이 달라서 그대로, 대문자, 소문자 순서로 찾아본다.
+    private static List<List<String>> indexColumns(DatabaseMetaData metaData, String catalog, String tableName) throws SQLException {
+        for (String candidate : new String[]{tableName, tableName.toUpperCase(Locale.ROOT), tableName.toLowerCase(Locale.ROOT)}) {
+            Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(catalog, null, candidate, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String columnName = rs.getString("COLUMN_NAME");
+                    if (indexName == null || columnName == null) {
+                        continue;
+                    }
+                    indexes.computeIfAbsent(indexName, name -> new TreeMap<>())
+                            .put(rs.getShort("ORDINAL_POSITION"), columnName.toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!indexes.isEmpty()) {
+                List<List<String>> result = new ArrayList<>();
+                indexes.values().forEach(columns -> result.add(new ArrayList<>(columns.values())));
+                return result;
+            }
+        }
+        return List.of();
+    }
+
+    // "team_id, age desc" -> [team_id, age]
+    private static List<String> columns(String columnList) {
+        List<String> columns = new ArrayList<>();
+        for (String column : columnList.split(",")) {
+            columns.add(column.trim().split("\\s+")[0].toLowerCase(Locale.ROOT));
+        }
+        return columns;
+    }
+
+    private static boolean startsWith(List<String> columns, List<String> prefix) {
+        return columns.size() >= prefix.size() && columns.subList(0, prefix.size()).equals(prefix);
+    }
+}
@@ -0,0 +1,28 @@
+package study.querydsl.monitor;
+
+import lombok.Getter;
+
+// 느린 쿼리(또는 샘플링된 쿼리) 한 건
+@Getter
+public class SlowQuery {
+    private final long timestamp;
+    private final long elapsedMillis;
+    private final boolean slow; // false 면 샘플링으로 남긴 쿼리
+    private final boolean success;
+    private final int batchSize;
+    private final String thread;
+    private final String sql;
+    private final String parameters;
+
+    public SlowQuery(long timestamp, long elapsedMillis, boolean slow, boolean success,
+                     int batchSize, String thread, String sql, String parameters) {
+        this.timestamp = timestamp;
+        this.elapsedMillis = elapsedMillis;
+        this.slow = slow;
+        this.success = success;
+        this.batchSize = batchSize;
+        this.thread = thread;
+        this.sql = sql;
+        this.parameters = parameters;
+    }
+}
@@ -0,0 +1,170 @@
+package study.querydsl.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.hibernate.engine.jdbc.internal.FormatStyle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 운영용 SQL 로그. (p6spy, show_sql, org.hibernate.type=trace 대체)
+ * <p>
+ * 모든 쿼리를 찍지 않고, 임계 시간(slow-threshold-millis)을 넘은 쿼리와 sample-rate 비율로 뽑힌 쿼리만 남긴다.
+ * 요청 스레드에서는 SQL 문자열과 바인딩 값만 복사하고, 포맷팅과 로그 출력은 전용 스레드 하나가 한다.
+ * 최근 느린 쿼리는 링 버퍼에 남겨서 /admin/slow-queries 로 볼 수 있다.
+ * 큐가 가득 차면 버리고 개수만 센다. (요청 스레드를 막지 않는다)
+ */
+@Slf4j
+@Component
+public class SlowQueryLog implements QueryExecutionListener {
+
+    private static final int MAX_LOGGED_BATCHES = 10; // 배치는 앞의 몇 건의 파라미터만
+
+    private final long slowThresholdMillis;
+    private final double sampleRate;
+    private final SlowQuery[] buffer;
+    private int next; // buffer 에 다음에 쓸 위치
+    private long recorded;
+    private final ThreadPoolExecutor formatter;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SlowQueryLog(@Value("${querydsl.sql-log.slow-threshold-millis:200}") long slowThresholdMillis,
+                        @Value("${querydsl.sql-log.sample-rate:0}") double sampleRate,
+                        @Value("${querydsl.sql-log.buffer-size:100}") int bufferSize,
+                        @Value("${querydsl.sql-log.queue-capacity:1000}") int queueCapacity) {
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.sampleRate = sampleRate;
+        this.buffer = new SlowQuery[bufferSize];
+        this.formatter = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-log");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.incrementAndGet());
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsed = execInfo.getElapsedTime();
+        boolean slow = elapsed >= slowThresholdMillis;
+        if (!slow && !sampled()) {
+            return;
+        }
+
+        // 여기까지가 요청 스레드. 원본 문자열과 값만 복사한다.
+        List<String> queries = new ArrayList<>(queryInfoList.size());
+        List<List<Object>> parameters = new ArrayList<>();
+        for (QueryInfo queryInfo : queryInfoList) {
+            queries.add(queryInfo.getQuery());
+            List<List<ParameterSetOperation>> parametersList = queryInfo.getParametersList();
+            for (int i = 0; i < parametersList.size() && i < MAX_LOGGED_BATCHES; i++) {
+                parameters.add(values(parametersList.get(i)));
+            }
+        }
+        long timestamp = System.currentTimeMillis();
+        String thread = Thread.currentThread().getName();
+        boolean success = execInfo.isSuccess();
+        int batchSize = execInfo.isBatch() ? execInfo.getBatchSize() : 0;
+
+        formatter.execute(() -> {
+            SlowQuery query = new SlowQuery(timestamp, elapsed, slow, success, batchSize, thread,
+                    format(queries), parameters.toString());
+            if (slow) {
+                log.warn("slow query {}ms [{}] {}\nparams={}", elapsed, thread, query.getSql(), query.getParameters());
+                add(query);
+            } else {
+                log.info("sampled query {}ms [{}] {}\nparams={}", elapsed, thread, query.getSql(), query.getParameters());
+            }
+        });
+    }
+
+    /**
+     * 최근 느린 쿼리. 최신 순.
+     */
+    public List<SlowQuery> recent() {
+        synchronized (buffer) {
+            List<SlowQuery> result = new ArrayList<>(buffer.length);
+            for (int i = 1; i <= buffer.length; i++) {
+                SlowQuery query = buffer[Math.floorMod(next - i, buffer.length)];
+                if (query == null) {
+                    break;
+                }
+                result.add(query);
+            }
+            return result;
+        }
+    }
+
+    public long getRecordedCount() {
+        synchronized (buffer) {
+            return recorded;
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        formatter.shutdownNow();
+    }
+
+    private boolean sampled() {
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    private void add(SlowQuery query) {
+        if (buffer.length == 0) {
+            return;
+        }
+        synchronized (buffer) {
+            buffer[next] = query;
+            next = (next + 1) % buffer.length;
+            recorded++;
+        }
+    }
+
+    private static List<Object> values(List<ParameterSetOperation> operations) {
+        List<Object> values = new ArrayList<>(operations.size());
+        for (ParameterSetOperation operation : operations) {
+            Object[] args = operation.getArgs();
+            values.add(ParameterSetOperation.isSetNullParameterOperation(operation) ? null : args[1]);
+        }
+        return values;
+    }
+
+    private static String format(List<String> queries) {
+        StringBuilder sb = new StringBuilder();
+        for (String query : queries) {
+            sb.append(FormatStyle.BASIC.getFormatter().format(query));
+        }
+        return sb.toString();
+    }
+}
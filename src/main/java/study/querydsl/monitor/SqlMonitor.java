@@ -0,0 +1,53 @@
+package study.querydsl.monitor;
+
+/**
+ * 스레드 단위 SQL 모니터 진입점.
+ * <p>
+ * 스코프(요청, 테스트 블록 등)를 열면 그 안에서 실행된 SQL 수와 지연 로딩을 센다.
+ * 스코프가 없으면 아무것도 하지 않으므로 운영에서는 일부 요청만 샘플링해서 열면 된다.
+ * <pre>
+ * try (SqlStatementScope scope = SqlMonitor.open("memberList", 3, SqlStatementScope.Action.FAIL)) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class SqlMonitor {
+
+    private static final ThreadLocal<SqlStatementScope> CURRENT = new ThreadLocal<>();
+
+    private SqlMonitor() {
+    }
+
+    public static SqlStatementScope open(String name, int threshold, SqlStatementScope.Action action) {
+        SqlStatementScope scope = new SqlStatementScope(name, threshold, action, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static SqlStatementScope current() {
+        return CURRENT.get();
+    }
+
+    static void onStatement(String sql) {
+        SqlStatementScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.recordStatement(sql);
+        }
+    }
+
+    static void onLazyLoad(String association) {
+        SqlStatementScope scope = CURRENT.get();
+        if (scope != null) {
+            scope.recordLazyLoad(association);
+        }
+    }
+
+    // 스코프가 닫히면 바깥 스코프로 돌아간다.
+    static void restore(SqlStatementScope parent) {
+        if (parent == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(parent);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.monitor;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Configuration
+public class SqlMonitorConfig {
+
+    // 스코프가 열려 있지 않으면 ThreadLocal 조회 한번 뿐이라 항상 등록해둔다.
+    @Bean
+    public HibernatePropertiesCustomizer sqlMonitorHibernateCustomizer() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCountingInspector());
+            properties.put("hibernate.integrator_provider", (IntegratorProvider) () -> List.of(new LazyLoadIntegrator()));
+        };
+    }
+
+    // 요청 단위 N+1 감지 (운영에서는 sample-rate 로 일부 요청만)
+    @Bean
+    @ConditionalOnProperty(name = "querydsl.sql-monitor.enabled", havingValue = "true")
+    public SqlMonitorFilter sqlMonitorFilter(@Value("${querydsl.sql-monitor.sample-rate:0.01}") double sampleRate,
+                                             @Value("${querydsl.sql-monitor.n-plus-one-threshold:5}") int threshold) {
+        return new SqlMonitorFilter(sampleRate, threshold);
+    }
+}
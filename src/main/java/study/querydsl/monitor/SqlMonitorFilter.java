@@ -0,0 +1,37 @@
+package study.querydsl.monitor;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 샘플링된 요청마다 SQL 스코프를 열고, N+1 이 의심되면 경고 로그를 남긴다.
+ * 비동기로 처리되는 요청(querydsl.async.enabled)은 다른 스레드에서 쿼리가 실행되므로 집계되지 않는다.
+ */
+public class SqlMonitorFilter extends OncePerRequestFilter {
+
+    private final double sampleRate;
+    private final int threshold;
+
+    public SqlMonitorFilter(double sampleRate, int threshold) {
+        this.sampleRate = sampleRate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String name = request.getMethod() + " " + request.getRequestURI();
+        try (SqlStatementScope ignored = SqlMonitor.open(name, threshold, SqlStatementScope.Action.WARN)) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package study.querydsl.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 하나의 스코프에서 실행된 SQL 통계.
+ * <p>
+ * 같은 연관관계(Member.team 프록시, Team.members 컬렉션)의 지연 로딩이 threshold 번 이상 일어나고
+ * 같은 select 문이 threshold 번 이상 반복되면 N+1 로 본다. (배치 페치로 한번에 가져온 경우는 제외된다)
+ */
+@Slf4j
+public class SqlStatementScope implements AutoCloseable {
+
+    public enum Action {
+        WARN, // 로그만 남긴다. (운영)
+        FAIL  // 스코프를 닫을 때 NPlusOneDetectedException (테스트)
+    }
+
+    private static final Set<String> MONITOR_CLASSES = Set.of(
+            SqlMonitor.class.getName(),
+            SqlStatementScope.class.getName(),
+            LazyLoadListener.class.getName(),
+            StatementCountingInspector.class.getName());
+
+    private final String name;
+    private final int threshold;
+    private final Action action;
+    private final SqlStatementScope parent;
+
+    private int statementCount;
+    private final Map<String, Integer> selectCounts = new LinkedHashMap<>();
+    private final Map<String, LazyLoad> lazyLoads = new LinkedHashMap<>();
+
+    SqlStatementScope(String name, int threshold, Action action, SqlStatementScope parent) {
+        this.name = name;
+        this.threshold = threshold;
+        this.action = action;
+        this.parent = parent;
+    }
+
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    public Map<String, Integer> getLazyLoadCounts() {
+        return lazyLoads.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().count, (a, b) -> a, LinkedHashMap::new));
+    }
+
+    /**
+     * @return N+1 의심 내역. 없으면 빈 목록
+     */
+    public List<String> findNPlusOne() {
+        int maxRepeatedSelect = selectCounts.values().stream().max(Integer::compare).orElse(0);
+        if (maxRepeatedSelect < threshold) {
+            return Collections.emptyList();
+        }
+        return lazyLoads.entrySet().stream()
+                .filter(e -> e.getValue().count >= threshold)
+                .map(e -> String.format("N+1 suspected in [%s]: %s lazy-loaded %d times (%d statements in scope), first at %s",
+                        name, e.getKey(), e.getValue().count, statementCount, e.getValue().firstCallSite))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        SqlMonitor.restore(parent);
+        List<String> problems = findNPlusOne();
+        if (problems.isEmpty()) {
+            return;
+        }
+        if (action == Action.FAIL) {
+            throw new NPlusOneDetectedException(String.join("\n", problems));
+        }
+        problems.forEach(log::warn);
+    }
+
+    void recordStatement(String sql) {
+        statementCount++;
+        String statement = stripComment(sql);
+        if (statement.regionMatches(true, 0, "select", 0, 6)) {
+            selectCounts.merge(statement, 1, Integer::sum);
+        }
+    }
+
+    void recordLazyLoad(String association) {
+        LazyLoad lazyLoad = lazyLoads.computeIfAbsent(association, key -> new LazyLoad(callSite()));
+        lazyLoad.count++;
+    }
+
+    // use_sql_comments 로 붙는 /* ... */ 주석 제거
+    private static String stripComment(String sql) {
+        String trimmed = sql.trim();
+        if (trimmed.startsWith("/*")) {
+            int end = trimmed.indexOf("*/");
+            if (end > 0) {
+                return trimmed.substring(end + 2).trim();
+            }
+        }
+        return trimmed;
+    }
+
+    // 지연 로딩을 일으킨 애플리케이션 코드 위치. 연관관계마다 처음 한번만 구한다.
+    private static String callSite() {
+        Optional<StackWalker.StackFrame> frame = StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("study.querydsl."))
+                .filter(f -> !MONITOR_CLASSES.contains(f.getClassName()))
+                .filter(f -> !f.getClassName().contains("$HibernateProxy$"))
+                .findFirst());
+        return frame.map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse("unknown");
+    }
+
+    private static class LazyLoad {
+        private final String firstCallSite;
+        private int count;
+
+        LazyLoad(String firstCallSite) {
+            this.firstCallSite = firstCallSite;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package study.querydsl.monitor;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// 하이버네이트가 실행하는 모든 SQL 이 거쳐간다. SQL 은 바꾸지 않는다.
+public class StatementCountingInspector implements StatementInspector {
+    @Override
+    public String inspect(String sql) {
+        SqlMonitor.onStatement(sql);
+        return sql;
+    }
+}
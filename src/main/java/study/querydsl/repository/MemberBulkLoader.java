@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberRow;
+import study.querydsl.entity.EntityChangeListener;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 회원 대량 적재.
+ * <p>
+ * - id 는 시퀀스를 50개씩 미리 할당(pooled)받아 insert 마다 시퀀스를 조회하지 않는다.
+ * - hibernate.jdbc.batch_size, order_inserts 설정으로 insert 가 JDBC 배치로 묶여 나간다.
+ * - chunk-size 마다 flush/clear 해서 영속성 컨텍스트가 끝없이 커지지 않게 한다.
+ * <p>
+ * 진행중인 트랜잭션이 없으면 chunk 마다 커밋한다. 있으면 그 트랜잭션에 참여하고 chunk 마다 flush/clear 만 한다.
+ * (이 경우 호출한 쪽의 영속성 컨텍스트도 비워지므로 주의)
+ * <p>
+ * 엔티티마다 변경 이벤트를 내지 않고 MemberBulkOperations 처럼 끝나고 BULK 이벤트를 한 번 발행한다.
+ * 바깥 트랜잭션 안이면 그 트랜잭션이 커밋된 뒤에 캐시가 다시 읽는다.
+ */
+@Slf4j
+@Component
+public class MemberBulkLoader {
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final int chunkSize;
+
+    public MemberBulkLoader(EntityManager em,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher publisher,
+                            @Value("${querydsl.bulk.chunk-size:1000}") int chunkSize) {
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+        this.chunkSize = chunkSize;
+    }
+
+    public Result load(Stream<MemberRow> rows) {
+        long start = System.nanoTime();
+        Teams teams = new Teams();
+        long total = 0;
+
+        Iterator<MemberRow> iterator = rows.iterator();
+        List<MemberRow> chunk = new ArrayList<>(chunkSize);
+        try {
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == chunkSize || !iterator.hasNext()) {
+                    transactionTemplate.executeWithoutResult(status -> EntityChangeListener.withoutEvents(() -> persistChunk(chunk, teams)));
+                    total += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } finally {
+            // 실패해도 앞에서 커밋된 chunk 가 있으므로 발행한다.
+            if (teams.created) {
+                publisher.publishEvent(EntityChangedEvent.bulk(Team.class));
+            }
+            if (total > 0) {
+                publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+            }
+        }
+
+        Result result = new Result(total, System.nanoTime() - start);
+        log.info("member bulk load finished: {}", result);
+        return result;
+    }
+
+    private void persistChunk(List<MemberRow> chunk, Teams teams) {
+        for (MemberRow row : chunk) {
+            Member member = new Member(row.getUsername(), row.getAge());
+            if (row.getTeamName() != null) {
+                // 생성자로 팀을 넣으면 team.members 컬렉션을 초기화(조회)하므로 연관관계만 건다.
+                member.setTeam(teamReference(row.getTeamName(), teams));
+            }
+            em.persist(member);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    // clear 이후에도 select 없이 프록시로 연관관계를 걸 수 있도록 id 만 기억한다.
+    private Team teamReference(String teamName, Teams teams) {
+        Long teamId = teams.idsByName.get(teamName);
+        if (teamId == null) {
+            teamId = em.createQuery("select t.id from Team t where t.name = :name", Long.class)
+                    .setParameter("name", teamName)
+                    .setMaxResults(1)
+                    .getResultStream()
+                    .findFirst()
+                    .orElseGet(() -> {
+                        Team team = new Team(teamName);
+                        em.persist(team);
+                        teams.created = true;
+                        return team.getId();
+                    });
+            teams.idsByName.put(teamName, teamId);
+        }
+        return em.getReference(Team.class, teamId);
+    }
+
+    private static class Teams {
+        private final Map<String, Long> idsByName = new HashMap<>(); // 팀 이름 -> id
+        private boolean created; // 새로 만든 팀이 있으면 팀 BULK 이벤트도 발행한다.
+    }
+
+    @Getter
+    @ToString
+    public static class Result {
+        private final long rows;
+        private final long elapsedMillis;
+        private final double rowsPerSecond;
+
+        Result(long rows, long elapsedNanos) {
+            this.rows = rows;
+            this.elapsedMillis = elapsedNanos / 1_000_000;
+            this.rowsPerSecond = elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+}
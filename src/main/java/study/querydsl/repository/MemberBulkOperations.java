@@ -0,0 +1,182 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 회원 벌크 update/delete.
+ * <p>
+ * - 대상 id 범위를 id-range 단위로 나눠 실행한다. 한 문장이 잡는 락과 undo 로그가 작아진다.
+ *   진행중인 트랜잭션이 없으면 범위마다 커밋하고, 있으면 그 트랜잭션 안에서 나눠 실행한다.
+ * - 벌크 연산은 영속성 컨텍스트를 무시하고 DB 에 바로 반영되므로 끝나면 영속성 컨텍스트를 맞춰준다.
+ *   (EVICT: 대상 범위의 Member 만 준영속으로, CLEAR: 전부 비움)
+ * - 2차 캐시의 member 리전과 카운트 캐시 등도 비운다. (엔티티 리스너가 호출되지 않으므로 직접 알린다)
+ */
+@Slf4j
+@Component
+public class MemberBulkOperations {
+
+    public enum Sync {
+        EVICT, CLEAR
+    }
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher publisher;
+    private final int idRange;
+    private final Sync sync;
+
+    public MemberBulkOperations(EntityManager em,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher publisher,
+                                @Value("${querydsl.bulk.id-range:10000}") int idRange,
+                                @Value("${querydsl.bulk.sync:evict}") String sync) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+        this.idRange = idRange;
+        this.sync = Sync.valueOf(sync.toUpperCase());
+    }
+
+    public Result addAge(MemberSearchCondition condition, int delta) {
+        return execute("addAge", condition, range -> queryFactory
+                .update(member)
+                .set(member.age, member.age.add(delta))
+                .where(MemberTeamQuerySpec.bulkWhere(condition))
+                .where(range)
+                .execute());
+    }
+
+    public Result rename(MemberSearchCondition condition, String username) {
+        return execute("rename", condition, range -> queryFactory
+                .update(member)
+                .set(member.username, username)
+                .where(MemberTeamQuerySpec.bulkWhere(condition))
+                .where(range)
+                .execute());
+    }
+
+    public Result delete(MemberSearchCondition condition) {
+        return execute("delete", condition, range -> queryFactory
+                .delete(member)
+                .where(MemberTeamQuerySpec.bulkWhere(condition))
+                .where(range)
+                .execute());
+    }
+
+    private Result execute(String operation, MemberSearchCondition condition, Function<BooleanExpression, Long> statement) {
+        long start = System.nanoTime();
+        boolean joined = TransactionSynchronizationManager.isActualTransactionActive();
+        if (joined) {
+            em.flush(); // 아직 안 나간 변경을 먼저 반영
+        }
+
+        Tuple bounds = queryFactory
+                .select(member.id.min(), member.id.max())
+                .from(member)
+                .where(MemberTeamQuerySpec.bulkWhere(condition))
+                .fetchOne();
+        Long minId = bounds == null ? null : bounds.get(member.id.min());
+        Long maxId = bounds == null ? null : bounds.get(member.id.max());
+        if (minId == null) {
+            return new Result(operation, Collections.emptyList(), System.nanoTime() - start);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (long from = minId; from <= maxId; from += idRange) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(from + idRange - 1, maxId);
+            long chunkStart = System.nanoTime();
+            Long affected = transactionTemplate.execute(status -> statement.apply(member.id.between(chunkFrom, chunkTo)));
+            Chunk chunk = new Chunk(chunkFrom, chunkTo, affected == null ? 0 : affected, System.nanoTime() - chunkStart);
+            log.debug("member bulk {} chunk: {}", operation, chunk);
+            chunks.add(chunk);
+        }
+
+        if (joined) {
+            synchronizePersistenceContext(minId, maxId);
+        }
+        em.getEntityManagerFactory().getCache().evict(Member.class);
+        publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+
+        Result result = new Result(operation, chunks, System.nanoTime() - start);
+        log.info("member bulk {} finished: {}", operation, result);
+        return result;
+    }
+
+    private void synchronizePersistenceContext(long minId, long maxId) {
+        if (sync == Sync.CLEAR) {
+            em.clear();
+            return;
+        }
+        // 영속성 컨텍스트에 올라온 Member 중 대상 범위에 있는 것만 준영속으로 만든다. 다음 조회시 DB 값을 다시 읽는다.
+        Map<EntityKey, Object> entities = em.unwrap(SessionImplementor.class).getPersistenceContext().getEntitiesByKey();
+        for (Object entity : new ArrayList<>(entities.values())) {
+            if (entity instanceof Member) {
+                Long id = ((Member) entity).getId();
+                if (id != null && id >= minId && id <= maxId) {
+                    em.detach(entity);
+                }
+            }
+        }
+    }
+
+    @Getter
+    @ToString
+    public static class Chunk {
+        private final long fromId;
+        private final long toId;
+        private final long affectedRows;
+        private final long elapsedMillis;
+
+        Chunk(long fromId, long toId, long affectedRows, long elapsedNanos) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.affectedRows = affectedRows;
+            this.elapsedMillis = elapsedNanos / 1_000_000;
+        }
+    }
+
+    @Getter
+    @ToString
+    public static class Result {
+        private final String operation;
+        private final long affectedRows;
+        private final long elapsedMillis;
+        @ToString.Exclude
+        private final List<Chunk> chunks;
+
+        Result(String operation, List<Chunk> chunks, long elapsedNanos) {
+            this.operation = operation;
+            this.affectedRows = chunks.stream().mapToLong(Chunk::getAffectedRows).sum();
+            this.elapsedMillis = elapsedNanos / 1_000_000;
+            this.chunks = chunks;
+        }
+    }
+}
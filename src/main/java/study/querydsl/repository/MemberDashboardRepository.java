@@ -0,0 +1,67 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberDashboardDTO;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.TeamAgeStatsDTO;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.support.DtoProjection;
+import study.querydsl.repository.support.ParallelQueries;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+
+import java.util.List;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 검색 결과 + 전체 건수 + 팀별 나이 통계를 한 화면에 보여준다.
+ * 세 쿼리는 서로 독립적이라 동시에 실행하고, 일부가 실패해도 나머지는 보여준다.
+ */
+@Repository
+public class MemberDashboardRepository extends Querydsl4RepositorySupport {
+
+    // sum(int) 는 하이버네이트가 Long 으로 돌려준다.
+    private static final DtoProjection<TeamAgeStatsDTO> TEAM_AGE_STATS = DtoProjection.of(TeamAgeStatsDTO.class,
+            row -> new TeamAgeStatsDTO((String) row[0],
+                    ((Number) row[1]).longValue(),
+                    ((Number) row[2]).longValue(),
+                    ((Number) row[3]).doubleValue(),
+                    ((Number) row[4]).intValue(),
+                    ((Number) row[5]).intValue()),
+            team.name, member.count(), member.age.sum(), member.age.avg(), member.age.max(), member.age.min());
+
+    private final TeamNameDictionary teamNameDictionary;
+
+    public MemberDashboardRepository(TeamNameDictionary teamNameDictionary) {
+        super(Member.class);
+        this.teamNameDictionary = teamNameDictionary;
+    }
+
+    public MemberDashboardDTO dashboard(MemberSearchCondition condition, Pageable pageable) {
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        ParallelQueries.Batch batch = parallel();
+        ParallelQueries.Result<List<MemberTeamDTO>> content = batch.submit("content",
+                () -> MemberTeamQuerySpec.contentQuery(getQueryFactory(), condition, teamIds)
+                        .offset(pageable.getOffset())
+                        .limit(pageable.getPageSize())
+                        .fetch());
+        ParallelQueries.Result<Long> total = batch.submit("total",
+                () -> MemberTeamQuerySpec.countQuery(getQueryFactory(), condition, teamIds).fetchOne());
+        ParallelQueries.Result<List<TeamAgeStatsDTO>> teamStats = batch.submit("teamStats", this::teamAgeStats);
+        batch.join(ParallelQueries.FailurePolicy.PARTIAL);
+
+        return new MemberDashboardDTO(content.orElse(null), total.orElse(null), teamStats.orElse(null), batch.getFailed());
+    }
+
+    public List<TeamAgeStatsDTO> teamAgeStats() {
+        return selectReadOnly(TEAM_AGE_STATS)
+                .from(member)
+                .join(member.team, team)
+                .groupBy(team.name)
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+}
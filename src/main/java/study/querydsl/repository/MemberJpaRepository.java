@@ -1,22 +1,28 @@
 package study.querydsl.repository;
 
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
 import study.querydsl.dto.QMemberTeamDTO;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.repository.support.ReadOnlyQuery;
 
 import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
@@ -27,12 +33,21 @@ import static study.querydsl.entity.QTeam.*;
 public class MemberJpaRepository {
     private final EntityManager em; // 트랜잭션 단위로 분리되서 실행된다? 동시성 문제 없다. 멀티쓰레드에서 문제 없다.
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberMemoryIndex memberIndex;
+    private final MemberSnapshot memberSnapshot;
+    private final TeamNameDictionary teamNameDictionary;
 
     // 테스트 주입이 편하다.
     // @RequiredArgsConstructor 만들어 준다.
-    public MemberJpaRepository(EntityManager em) {
+    public MemberJpaRepository(EntityManager em, MemberSearchQueryCache searchQueryCache, MemberMemoryIndex memberIndex,
+                               MemberSnapshot memberSnapshot, TeamNameDictionary teamNameDictionary) {
         this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.searchQueryCache = searchQueryCache;
+        this.memberIndex = memberIndex;
+        this.memberSnapshot = memberSnapshot;
+        this.teamNameDictionary = teamNameDictionary;
 //        this.queryFactory = jpaQueryFactory;
     }
 
@@ -40,34 +55,41 @@ public class MemberJpaRepository {
         em.persist(member);
     }
 
+    // 조회 메서드는 읽기 전용 트랜잭션 + 조회 전용 힌트. 돌려준 엔티티를 고쳐도 update 되지 않는다.
+    @Transactional(readOnly = true)
     public Optional<Member> findById(Long id) {
         Member findMember = em.find(Member.class, id);
         return Optional.ofNullable(findMember);
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll() {
-        return em.createQuery("select m from Member m", Member.class).getResultList();
+        return ReadOnlyQuery.hint(em.createQuery("select m from Member m", Member.class)).getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findAll_Querydsl() {
-        return queryFactory
-                .selectFrom(member)
+        return ReadOnlyQuery.hint(queryFactory
+                .selectFrom(member))
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername(String username) {
-        return em.createQuery("select m from Member m where m.username = :username", Member.class)
+        return ReadOnlyQuery.hint(em.createQuery("select m from Member m where m.username = :username", Member.class))
                 .setParameter("username", username)
                 .getResultList();
     }
 
+    @Transactional(readOnly = true)
     public List<Member> findByUsername_Querydsl(String username) {
-        return queryFactory
+        return ReadOnlyQuery.hint(queryFactory
                 .selectFrom(member)
-                .where(member.username.eq(username))
+                .where(member.username.eq(username)))
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDTO> searchByBuilder(MemberSearchCondition condition) {
         BooleanBuilder builder = new BooleanBuilder();
         if (hasText(condition.getUsername())) {
@@ -82,7 +104,7 @@ public class MemberJpaRepository {
         if (condition.getAgeLoe() != null) {
             builder.and(member.age.loe(condition.getAgeLoe()));
         }
-        return queryFactory
+        return ReadOnlyQuery.hint(queryFactory
                 .select(new QMemberTeamDTO(
                         member.id.as("memberId"),
                         member.username,
@@ -91,45 +113,41 @@ public class MemberJpaRepository {
                         team.name.as("teamName")))
                 .from(member)
                 .leftJoin(member.team, team)
-                .where(builder)
+                .where(builder))
                 .fetch();
     }
 
+    @Transactional(readOnly = true)
     public List<MemberTeamDTO> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch()
-                ;
-    }
-
-    // 아래와 같이 만들면, 함수들을 조립해서 사용할 수 있다.
-    // booleanexpression으로 하면 and로 깔끔하게 처리 된다.
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-
+        return memberIndex.search(condition)
+                .or(() -> memberSnapshot.search(condition))
+                .orElseGet(() -> searchQueryCache.search(condition));
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
-
-    }
-
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    /**
+     * 대용량 내보내기용. 결과를 한번에 메모리에 올리지 않고 forward-only 커서(ScrollableResults)로 한 건씩 넘긴다.
+     * DTO 프로젝션이라 영속성 컨텍스트에 엔티티가 쌓이지 않는다.
+     * 커서를 읽는 동안 커넥션이 유지되어야 하므로 트랜잭션 안에서 호출해야 한다.
+     *
+     * @return 넘긴 건수
+     */
+    @Transactional(readOnly = true)
+    public long searchForEach(MemberSearchCondition condition, int fetchSize, Consumer<MemberTeamDTO> consumer) {
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        // 내보내기는 항상 모든 컬럼을 쓴다.
+        CloseableIterator<MemberTeamDTO> iterator = MemberTeamQuerySpec.contentQuery(queryFactory, condition, teamIds, MemberTeamField.ALL)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize) // JDBC fetch size 만큼씩 DB에서 가져온다.
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate();
+        try {
+            long count = 0;
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+            return count;
+        } finally {
+            iterator.close();
+        }
     }
 }
@@ -0,0 +1,601 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberAgeState;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.LongIntHashMap;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 검색용 메모리 인덱스 (querydsl.member-index.enabled=true 일 때만)
+ * <p>
+ * - username 해시 인덱스
+ * - (age, id) 로 정렬한 int[] / long[] 나이 인덱스. 박싱된 Integer, Long 이 없다.
+ * 회원 값은 슬롯 단위 컬럼 배열(long[] id, int[] age, long[] teamId, String[] username)에 둔다.
+ * <p>
+ * username 이나 나이 조건이 있는 검색은 DB 대신 여기서 답한다. 팀 이름 조건은 같이 걸러준다.
+ * 조건이 없거나 팀 이름만 있는 검색(사실상 전체 조회)은 DB 로 간다.
+ * <p>
+ * 커밋된 변경은 엔티티 이벤트로 반영한다. 나이 인덱스는 정렬 배열이라 바로 끼워 넣지 않고
+ * 작은 델타 배열에 쌓았다가 일정 크기가 넘으면 다시 정렬한다. 정렬 배열에 남은 옛날 항목은 조회할 때 레코드와 비교해서 거른다.
+ * <p>
+ * 처음 조회할 때와 벌크 update/delete 후에는 DB 에서 다시 만든다. 다시 만드는 일은 member-index 스레드 하나가 하고,
+ * 다 만들 때까지 조회는 empty 를 돌려받아 DB 로 간다. 만드는 동안 커밋된 변경은 모아뒀다가 다 만든 뒤에 순서대로 반영한다.
+ */
+@Slf4j
+@Component
+public class MemberMemoryIndex {
+
+    private static final int MIN_DELTA_MERGE = 1024;
+    private static final int MAX_PENDING = 100_000; // 만드는 동안 이보다 많이 바뀌면 모아두지 않고 한번 더 만든다.
+    private static final long MAX_ID = (1L << 40) - 1; // (나이, id) 를 long 하나로 묶어 정렬하기 위한 제한
+    private static final int AGE_OFFSET = 1 << 23; // 나이는 -2^23 ~ 2^23-1
+    private static final long NO_TEAM = 0; // 팀 시퀀스는 1 부터
+
+    private final boolean enabled;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object(); // 한 번에 하나만 만든다.
+    private final ExecutorService rebuilder; // 꺼져 있으면 null
+
+    private Data data; // lock 으로 보호
+    private boolean stale = true;
+    private boolean rebuildRequested;
+    private List<EntityChangedEvent> pending; // 만드는 중에만 null 이 아니다.
+    private boolean missedChanges; // 만드는 중에 모아둘 수 없는 변경(벌크)이 있었다.
+    private volatile boolean unsupported; // id/나이가 범위를 넘는 데이터가 있으면 인덱스를 쓰지 않는다.
+
+    public MemberMemoryIndex(@Value("${querydsl.member-index.enabled:false}") boolean enabled,
+                             @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                             EntityManager em,
+                             PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 커밋된 값으로만 만든다. 읽는 동안의 변경을 이어 붙이므로 레플리카가 아니라 프라이머리에서 읽는다. (readOnly 로 두지 않는다)
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.rebuilder = enabled ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-index");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (rebuilder != null) {
+            rebuilder.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return 인덱스로 답할 수 없으면 empty. (꺼져 있음, 인덱스 안되는 조건, 다시 만드는 중, 쓰기 트랜잭션 안) id 순서로 돌려준다.
+     */
+    public Optional<List<MemberTeamDTO>> search(MemberSearchCondition condition) {
+        // 인덱스에는 커밋된 값만 있다. 쓰기 트랜잭션 안에서는 자기가 바꾼 값이 보여야 하므로 DB 로 간다.
+        if (!enabled || unsupported || !indexable(condition) || isWriteTransaction()) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            if (!stale && data != null) {
+                return Optional.of(data.search(condition));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        requestRebuild();
+        return Optional.empty();
+    }
+
+    /**
+     * 오래된 인덱스를 지금 스레드에서 다시 만든다. 다른 스레드가 만드는 중이면 끝날 때까지 기다린다.
+     * @return 다시 만들었으면 true
+     */
+    public boolean rebuild() {
+        synchronized (rebuildLock) {
+            lock.writeLock().lock();
+            try {
+                if (!enabled || unsupported || !stale) {
+                    rebuildRequested = false;
+                    return false;
+                }
+                pending = new ArrayList<>();
+                missedChanges = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Data loaded = null;
+            boolean again;
+            try {
+                loaded = transactionTemplate.execute(status -> load());
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    List<EntityChangedEvent> changes = pending;
+                    pending = null;
+                    rebuildRequested = false;
+                    if (loaded != null) {
+                        install(loaded, changes);
+                    }
+                    again = loaded != null && stale;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            if (again) {
+                requestRebuild();
+            }
+            return loaded != null;
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            if (data == null) {
+                return new Stats(enabled, stale, 0, 0, 0, 0);
+            }
+            return new Stats(enabled, stale, data.slotById.size(), data.sortedSize, data.deltaSize, data.estimatedBytes());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            stale = true;
+            missedChanges = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterEntityChangeCommit(EntityChangedEvent event) {
+        if (!enabled || !event.isAbout(Member.class) && !event.isAbout(Team.class)) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            invalidate();
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (pending != null && !missedChanges) {
+                if (pending.size() < MAX_PENDING) {
+                    pending.add(event);
+                } else {
+                    missedChanges = true;
+                    pending.clear();
+                }
+            }
+            if (!stale && data != null && !apply(data, event)) {
+                stale = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private static boolean indexable(MemberSearchCondition condition) {
+        return hasText(condition.getUsername()) || condition.getAgeGoe() != null || condition.getAgeLoe() != null;
+    }
+
+    private void requestRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (rebuildRequested || !stale) {
+                return;
+            }
+            rebuildRequested = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            rebuilder.execute(this::rebuildQuietly);
+        } catch (RejectedExecutionException e) {
+            log.debug("member index rebuild rejected (shutting down)");
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.warn("member index rebuild failed", e); // 다음 조회 때 다시 시도한다.
+        }
+    }
+
+    // lock(쓰기) 안에서. 만드는 동안 커밋된 변경을 순서대로 다시 반영한다. 읽을 때 이미 본 변경이면 같은 값이 된다.
+    // 모아둘 수 없는 변경(벌크)이 있었으면 결과는 쓰되 오래된 것으로 두고 한번 더 만든다.
+    private void install(Data loaded, List<EntityChangedEvent> changes) {
+        boolean complete = !missedChanges;
+        for (int i = 0; complete && i < changes.size(); i++) {
+            complete = apply(loaded, changes.get(i));
+        }
+        data = loaded;
+        stale = !complete;
+        log.info("member index loaded: members={}, estimatedBytes={}, stale={}",
+                loaded.slotById.size(), loaded.estimatedBytes(), stale);
+    }
+
+    // 범위를 넘는 값이면 false
+    private static boolean apply(Data data, EntityChangedEvent event) {
+        if (event.isAbout(Member.class)) {
+            Member changed = (Member) event.getEntity();
+            if (event.getType() == EntityChangedEvent.Type.REMOVE) {
+                data.remove(changed.getId());
+                return true;
+            }
+            MemberAgeState state = (MemberAgeState) event.getCurrentState();
+            return data.upsert(changed.getId(), changed.getUsername(), state.getAge(), state.getTeamId());
+        }
+        Team changed = (Team) event.getEntity();
+        if (event.getType() == EntityChangedEvent.Type.REMOVE) {
+            data.teamNames.remove(changed.getId());
+        } else {
+            data.teamNames.put(changed.getId(), changed.getName());
+        }
+        return true;
+    }
+
+    private Data load() {
+        Data loaded = new Data(1024);
+        loaded.loading = true;
+        for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loaded.teamNames.put(tuple.get(team.id), tuple.get(team.name));
+        }
+        CloseableIterator<Tuple> rows = queryFactory.select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.READ_ONLY, true)
+                .iterate();
+        try {
+            while (rows.hasNext()) {
+                Tuple row = rows.next();
+                if (!loaded.upsert(row.get(member.id), row.get(member.username), row.get(member.age), row.get(member.team.id))) {
+                    log.warn("member index disabled: id or age out of range ({})", row);
+                    unsupported = true;
+                    return null;
+                }
+            }
+        } finally {
+            rows.close();
+        }
+        loaded.mergeDelta();
+        loaded.loading = false;
+        return loaded;
+    }
+
+    @Getter
+    public static class Stats {
+        private final boolean enabled;
+        private final boolean stale;
+        private final int members;
+        private final int sortedEntries;
+        private final int deltaEntries;
+        private final long estimatedBytes;
+        private final long bytesPerMember;
+
+        Stats(boolean enabled, boolean stale, int members, int sortedEntries, int deltaEntries, long estimatedBytes) {
+            this.enabled = enabled;
+            this.stale = stale;
+            this.members = members;
+            this.sortedEntries = sortedEntries;
+            this.deltaEntries = deltaEntries;
+            this.estimatedBytes = estimatedBytes;
+            this.bytesPerMember = members == 0 ? 0 : estimatedBytes / members;
+        }
+    }
+
+    private static class Data {
+        // 회원 레코드. 빈 슬롯은 slotIds 가 0
+        private long[] slotIds;
+        private int[] slotAges;
+        private long[] slotTeamIds;
+        private String[] slotUsernames;
+        private int slotCount;
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private final LongIntHashMap slotById;
+        private final Map<String, int[]> slotsByUsername = new HashMap<>();
+        private final Map<Long, String> teamNames = new HashMap<>(); // 팀은 몇 개 안된다.
+
+        // (age, id) 정렬 배열 + 아직 정렬 안된 델타
+        private int[] sortedAges = new int[0];
+        private long[] sortedIds = new long[0];
+        private int sortedSize;
+        private int[] deltaAges = new int[64];
+        private long[] deltaIds = new long[64];
+        private int deltaSize;
+        private boolean loading; // 처음 만들 때는 델타 없이 레코드만 넣고 마지막에 한번 정렬한다.
+
+        Data(int capacity) {
+            slotIds = new long[capacity];
+            slotAges = new int[capacity];
+            slotTeamIds = new long[capacity];
+            slotUsernames = new String[capacity];
+            slotById = new LongIntHashMap(capacity);
+        }
+
+        // 범위를 넘는 id/나이면 false
+        boolean upsert(long id, String username, int age, Long teamId) {
+            if (id <= 0 || id > MAX_ID || age < -AGE_OFFSET || age >= AGE_OFFSET) {
+                return false;
+            }
+            int slot = slotById.get(id, -1);
+            boolean isNew = slot < 0;
+            if (isNew) {
+                slot = allocateSlot();
+                slotIds[slot] = id;
+                slotById.put(id, slot);
+            }
+            if (isNew || !Objects.equals(slotUsernames[slot], username)) {
+                if (!isNew) {
+                    removeUsername(slotUsernames[slot], slot);
+                }
+                addUsername(username, slot);
+            }
+            boolean ageChanged = isNew || slotAges[slot] != age;
+            slotUsernames[slot] = username;
+            slotAges[slot] = age;
+            slotTeamIds[slot] = teamId != null ? teamId : NO_TEAM;
+            if (ageChanged && !loading) {
+                addDelta(age, id);
+            }
+            return true;
+        }
+
+        void remove(long id) {
+            int slot = slotById.get(id, -1);
+            if (slot < 0) {
+                return;
+            }
+            removeUsername(slotUsernames[slot], slot);
+            slotById.remove(id);
+            slotIds[slot] = 0;
+            slotUsernames[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot; // 나이 인덱스의 항목은 조회할 때 걸러진다.
+        }
+
+        List<MemberTeamDTO> search(MemberSearchCondition condition) {
+            int ageGoe = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+            int ageLoe = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+            long[] ids = new long[16];
+            int count = 0;
+
+            if (hasText(condition.getUsername())) {
+                int[] slots = slotsByUsername.get(condition.getUsername());
+                if (slots != null) {
+                    for (int slot : slots) {
+                        if (matches(slot, condition, ageGoe, ageLoe)) {
+                            ids = grow(ids, count);
+                            ids[count++] = slotIds[slot];
+                        }
+                    }
+                }
+            } else {
+                for (int i = lowerBound(ageGoe); i < sortedSize && sortedAges[i] <= ageLoe; i++) {
+                    int slot = validSlot(sortedAges[i], sortedIds[i]);
+                    if (slot >= 0 && matches(slot, condition, ageGoe, ageLoe)) {
+                        ids = grow(ids, count);
+                        ids[count++] = sortedIds[i];
+                    }
+                }
+                for (int i = 0; i < deltaSize; i++) {
+                    int slot = validSlot(deltaAges[i], deltaIds[i]);
+                    if (slot >= 0 && matches(slot, condition, ageGoe, ageLoe)) {
+                        ids = grow(ids, count);
+                        ids[count++] = deltaIds[i];
+                    }
+                }
+            }
+
+            // 나이가 바뀌었다가 되돌아온 회원은 두 번 나올 수 있어서 정렬 후 중복을 뺀다.
+            Arrays.sort(ids, 0, count);
+            // DB 로 조회할 때처럼 고르지 않은 필드는 null (나이는 0)
+            int fieldMask = condition.fieldMask();
+            boolean memberId = MemberTeamField.MEMBER_ID.in(fieldMask);
+            boolean username = MemberTeamField.USERNAME.in(fieldMask);
+            boolean age = MemberTeamField.AGE.in(fieldMask);
+            boolean teamIdSelected = MemberTeamField.TEAM_ID.in(fieldMask);
+            boolean teamName = MemberTeamField.TEAM_NAME.in(fieldMask);
+            List<MemberTeamDTO> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && ids[i] == ids[i - 1]) {
+                    continue;
+                }
+                int slot = slotById.get(ids[i], -1);
+                long teamId = slotTeamIds[slot];
+                result.add(new MemberTeamDTO(memberId ? ids[i] : null,
+                        username ? slotUsernames[slot] : null,
+                        age ? slotAges[slot] : 0,
+                        teamIdSelected && teamId != NO_TEAM ? teamId : null,
+                        teamName && teamId != NO_TEAM ? teamNames.get(teamId) : null));
+            }
+            return result;
+        }
+
+        // 델타를 정렬 배열에 합친다. 살아있는 레코드에서 다시 만들어서 옛날 항목도 같이 정리된다.
+        void mergeDelta() {
+            int live = slotById.size();
+            long[] packed = new long[live];
+            int n = 0;
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (slotIds[slot] != 0) {
+                    packed[n++] = ((long) (slotAges[slot] + AGE_OFFSET) << 40) | slotIds[slot];
+                }
+            }
+            Arrays.sort(packed, 0, n);
+            sortedAges = new int[n];
+            sortedIds = new long[n];
+            for (int i = 0; i < n; i++) {
+                sortedAges[i] = (int) (packed[i] >>> 40) - AGE_OFFSET;
+                sortedIds[i] = packed[i] & MAX_ID;
+            }
+            sortedSize = n;
+            deltaSize = 0;
+        }
+
+        long estimatedBytes() {
+            long bytes = slotIds.length * (8L + 4L + 8L + 4L) // 슬롯 배열 4개 (참조는 압축 oops 4바이트)
+                    + slotById.estimatedBytes()
+                    + sortedAges.length * 4L + sortedIds.length * 8L
+                    + deltaAges.length * 4L + deltaIds.length * 8L
+                    + freeSlots.length * 4L;
+            for (Map.Entry<String, int[]> entry : slotsByUsername.entrySet()) {
+                bytes += 48 // HashMap.Node + 테이블 칸
+                        + 40 + entry.getKey().length() // String + byte[] (Latin-1)
+                        + 16 + entry.getValue().length * 4L;
+            }
+            return bytes + teamNames.size() * 100L;
+        }
+
+        private boolean matches(int slot, MemberSearchCondition condition, int ageGoe, int ageLoe) {
+            int age = slotAges[slot];
+            if (age < ageGoe || age > ageLoe) {
+                return false;
+            }
+            if (hasText(condition.getTeamName())) {
+                long teamId = slotTeamIds[slot];
+                return teamId != NO_TEAM && condition.getTeamName().equals(teamNames.get(teamId));
+            }
+            return true;
+        }
+
+        // 인덱스 항목이 지금 레코드와 맞으면 슬롯, 아니면(지워졌거나 나이가 바뀜) -1
+        private int validSlot(int age, long id) {
+            int slot = slotById.get(id, -1);
+            return slot >= 0 && slotAges[slot] == age ? slot : -1;
+        }
+
+        private int lowerBound(int age) {
+            int low = 0;
+            int high = sortedSize;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedAges[mid] < age) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void addDelta(int age, long id) {
+            if (deltaSize == deltaAges.length) {
+                deltaAges = Arrays.copyOf(deltaAges, deltaSize * 2);
+                deltaIds = Arrays.copyOf(deltaIds, deltaSize * 2);
+            }
+            deltaAges[deltaSize] = age;
+            deltaIds[deltaSize] = id;
+            deltaSize++;
+            if (deltaSize > Math.max(MIN_DELTA_MERGE, sortedSize / 8)) {
+                mergeDelta();
+            }
+        }
+
+        private int allocateSlot() {
+            if (freeCount > 0) {
+                return freeSlots[--freeCount];
+            }
+            if (slotCount == slotIds.length) {
+                int capacity = slotCount * 2;
+                slotIds = Arrays.copyOf(slotIds, capacity);
+                slotAges = Arrays.copyOf(slotAges, capacity);
+                slotTeamIds = Arrays.copyOf(slotTeamIds, capacity);
+                slotUsernames = Arrays.copyOf(slotUsernames, capacity);
+            }
+            return slotCount++;
+        }
+
+        private void addUsername(String username, int slot) {
+            int[] slots = slotsByUsername.get(username);
+            if (slots == null) {
+                slotsByUsername.put(username, new int[]{slot});
+            } else {
+                int[] grown = Arrays.copyOf(slots, slots.length + 1);
+                grown[slots.length] = slot;
+                slotsByUsername.put(username, grown);
+            }
+        }
+
+        private void removeUsername(String username, int slot) {
+            int[] slots = slotsByUsername.get(username);
+            if (slots == null) {
+                return;
+            }
+            int[] remaining = new int[slots.length];
+            int n = 0;
+            for (int s : slots) {
+                if (s != slot) {
+                    remaining[n++] = s;
+                }
+            }
+            if (n == 0) {
+                slotsByUsername.remove(username);
+            } else {
+                slotsByUsername.put(username, Arrays.copyOf(remaining, n));
+            }
+        }
+
+        private static long[] grow(long[] ids, int count) {
+            return count < ids.length ? ids : Arrays.copyOf(ids, ids.length * 2);
+        }
+    }
+}
@@ -4,6 +4,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamSliceDTO;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
 
 import java.util.List;
 
@@ -11,4 +14,6 @@ public interface MemberRepositoryCustom {
     List<MemberTeamDTO> search(MemberSearchCondition condition);
     Page<MemberTeamDTO> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDTO> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    MemberTeamSliceDTO searchSlice(MemberSearchCondition condition, String cursor, int size);
+    CountedPage<MemberTeamDTO> searchPageCounted(MemberSearchCondition condition, Pageable pageable, CountStrategy strategy);
 }
@@ -9,84 +9,68 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
-import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDTO;
-import study.querydsl.dto.QMemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.dto.MemberTeamSliceDTO;
 import study.querydsl.entity.Member;
+import study.querydsl.repository.support.CountQueryExecutor;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.KeysetCursor;
+import study.querydsl.repository.support.TableRowEstimator;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
-import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
 
 // Impl은 규칙이 있다 반드시 이렇게 만들어야 한다.
+// 전부 조회 메서드라 읽기 전용 트랜잭션. (querydsl.replica.enabled 면 레플리카로 간다)
+@Transactional(readOnly = true)
 public class MemberRepositoryImpl extends QuerydslRepositorySupport implements MemberRepositoryCustom{
     private final JPAQueryFactory queryFactory;
+    private final CountQueryExecutor countQueryExecutor;
+    private final MemberSearchQueryCache searchQueryCache;
+    private final MemberMemoryIndex memberIndex;
+    private final MemberSnapshot memberSnapshot;
+    private final TeamNameDictionary teamNameDictionary;
+    private final TableRowEstimator tableRowEstimator;
 //    public MemberRepositoryImpl(EntityManager em) {
 //        this.queryFactory = new JPAQueryFactory(em);
 //    }
 
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, CountQueryExecutor countQueryExecutor, MemberSearchQueryCache searchQueryCache,
+                                MemberMemoryIndex memberIndex, MemberSnapshot memberSnapshot, TeamNameDictionary teamNameDictionary,
+                                TableRowEstimator tableRowEstimator) {
         super(Member.class);
         this.queryFactory = new JPAQueryFactory(em);
+        this.countQueryExecutor = countQueryExecutor;
+        this.searchQueryCache = searchQueryCache;
+        this.memberIndex = memberIndex;
+        this.memberSnapshot = memberSnapshot;
+        this.teamNameDictionary = teamNameDictionary;
+        this.tableRowEstimator = tableRowEstimator;
     }
 
     @Override
     public List<MemberTeamDTO> search(MemberSearchCondition condition) {
-
-        EntityManager em = getEntityManager();
-
-        from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                ).select(
-                        new QMemberTeamDTO(
-                                member.id.as("memberId"),
-                                member.username,
-                                member.age,
-                                team.id.as("teamId"),
-                                team.name.as("teamName"))).fetch();
-
-        return queryFactory
-                .select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .fetch()
-                ;
+        // 메모리 인덱스나 off-heap 스냅샷으로 답할 수 있으면 DB 를 타지 않는다. 아니면 조건 모양별로 만들어둔 JPQL 재사용
+        return memberIndex.search(condition)
+                .or(() -> memberSnapshot.search(condition))
+                .orElseGet(() -> searchQueryCache.search(condition));
     }
 
     @Override
     public Page<MemberTeamDTO> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDTO> results = queryFactory
-                .select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        QueryResults<MemberTeamDTO> results = MemberTeamQuerySpec.contentQuery(queryFactory, condition, teamIds)
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
@@ -102,17 +86,8 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 
         JPQLQuery<MemberTeamDTO> jpaQuery = from(member)
                 .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
-                .select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                ));
+                .where(MemberTeamQuerySpec.where(condition))
+                .select(MemberTeamQuerySpec.projection());
 
         JPQLQuery<MemberTeamDTO> query = getQuerydsl().applyPagination(pageable, jpaQuery);
         QueryResults<MemberTeamDTO> results = query.fetchResults(); // sort가 안됨.
@@ -126,55 +101,69 @@ public class MemberRepositoryImpl extends QuerydslRepositorySupport implements M
 
     @Override
     public Page<MemberTeamDTO> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDTO> content = queryFactory
-                .select(new QMemberTeamDTO(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")
-                )).from(member)
-                .leftJoin(member.team, team)
-                .where(usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe()))
+        // 스냅샷이 있으면 해당 페이지만 DTO 로 만든다.
+        Optional<Page<MemberTeamDTO>> fromSnapshot = memberSnapshot.searchPage(condition, pageable);
+        if (fromSnapshot.isPresent()) {
+            return fromSnapshot.get();
+        }
+
+        // 팀 이름은 id 로 바꿔서 거른다. 사전에 없으면 조인으로 거른다.
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        JPAQuery<MemberTeamDTO> contentQuery = MemberTeamQuerySpec.contentQuery(queryFactory, condition, teamIds)
                 .offset(pageable.getOffset())
-                .limit(pageable.getPageSize())
-                .fetch();
+                .limit(pageable.getPageSize());
 
-        // 콘텐츠 쿼리는 복잡하나 카운트 쿼리는 단순할때 사용하는 방법
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
-//        return new PageImpl<>(content, pageable, total);
-    }
+        // 콘텐츠 쿼리는 복잡하나 카운트 쿼리는 단순할때 사용하는 방법 (팀 id 로 거르면 조인도 없다)
+        JPAQuery<Long> countQuery = MemberTeamQuerySpec.countQuery(queryFactory, condition, teamIds);
 
-    // 아래와 같이 만들면, 함수들을 조립해서 사용할 수 있다.
-    // booleanexpression으로 하면 and로 깔끔하게 처리 된다.
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        return ageLoe != null ? member.age.loe(ageLoe) : null;
+        // 같은 조건의 total 은 캐시하고, 설정하면 카운트를 콘텐츠와 동시에 실행한다.
+        return countQueryExecutor.getPage(
+                CountQueryExecutor.key("searchPageComplex", condition.normalize()),
+                pageable, contentQuery::fetch, countQuery::fetchOne);
+//        return new PageImpl<>(content, pageable, total);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        return ageGoe != null ? member.age.goe(ageGoe) : null;
-
+    // searchPageComplex 와 같은 검색인데 total 을 구하는 방법을 고른다. 무한 스크롤이면 SLICE 로 카운트를 안한다.
+    @Override
+    public CountedPage<MemberTeamDTO> searchPageCounted(MemberSearchCondition condition, Pageable pageable, CountStrategy strategy) {
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        return countQueryExecutor.getCountedPage(
+                CountQueryExecutor.key("searchPageComplex", condition.normalize()), // total 은 searchPageComplex 와 같다.
+                pageable, strategy,
+                limit -> MemberTeamQuerySpec.contentQuery(queryFactory, condition, teamIds)
+                        .offset(pageable.getOffset())
+                        .limit(limit)
+                        .fetch(),
+                () -> MemberTeamQuerySpec.countQuery(queryFactory, condition, teamIds).fetchOne(),
+                offset -> MemberTeamQuerySpec.idQuery(queryFactory, condition, teamIds).offset(offset).fetchFirst() != null,
+                // 통계는 테이블 전체 행 수뿐이라 조건이 없을 때만 추정한다.
+                () -> MemberTeamQuerySpec.shape(condition) == 0 ? tableRowEstimator.estimate("member") : null);
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        return hasText(teamName) ? team.name.eq(teamName) : null;
+    // offset 대신 마지막으로 본 member.id 다음부터 찾는다. 몇번째 페이지든 비용이 같다.
+    @Override
+    public MemberTeamSliceDTO searchSlice(MemberSearchCondition condition, String cursor, int size) {
+        Assert.isTrue(size > 0, "size must be greater than 0");
+        Long lastMemberId = KeysetCursor.decode(cursor);
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+
+        // 커서를 만들려면 memberId 는 항상 있어야 한다.
+        int fieldMask = condition.fieldMask() | MemberTeamField.MEMBER_ID.bit();
+        List<MemberTeamDTO> content = MemberTeamQuerySpec.contentQuery(queryFactory, condition, teamIds, fieldMask)
+                .where(memberIdGt(lastMemberId))
+                .orderBy(member.id.asc())
+                .limit(size + 1) // 다음 페이지가 있는지 카운트 쿼리 없이 알기 위해 하나 더 가져온다.
+                .fetch();
 
+        boolean hasNext = content.size() > size;
+        if (hasNext) {
+            content = new ArrayList<>(content.subList(0, size));
+        }
+        String nextCursor = hasNext ? KeysetCursor.encode(content.get(size - 1).getMemberId()) : null;
+        return new MemberTeamSliceDTO(content, nextCursor, hasNext);
     }
 
-    private BooleanExpression usernameEq(String username) {
-        return hasText(username) ? member.username.eq(username) : null;
+    private BooleanExpression memberIdGt(Long lastMemberId) {
+        return lastMemberId != null ? member.id.gt(lastMemberId) : null;
     }
 }
@@ -0,0 +1,105 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.repository.support.DtoProjection;
+import study.querydsl.repository.support.ReadOnlyQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 검색 JPQL 템플릿 캐시.
+ * <p>
+ * 검색할 때마다 querydsl 표현식 트리를 만들고 JPQL 문자열로 직렬화하는 비용을 없앤다.
+ * 검색 조건 모양은 몇 가지 뿐이므로 모양별로 JPQL 을 한번만 만들고, 이후에는 파라미터만 바인딩한다.
+ * 팀 이름은 TeamNameDictionary 로 id 로 바꿀 수 있으면 member.team.id 로 거른다.
+ * 고른 필드(fields)마다 select 절과 조인이 다르므로 템플릿은 (조건 모양, 필드 조합) 별로 만든다.
+ * 같은 JPQL 문자열이 반복되므로 하이버네이트의 쿼리 플랜 캐시(QueryPlanCache)도 항상 적중한다.
+ */
+@Component
+public class MemberSearchQueryCache {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamNameDictionary teamNameDictionary;
+    private final AtomicReferenceArray<String> templates = new AtomicReferenceArray<>(
+            MemberTeamQuerySpec.SHAPE_COUNT * (MemberTeamField.ALL + 1));
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder buildNanos = new LongAdder();
+
+    public MemberSearchQueryCache(EntityManager em, TeamNameDictionary teamNameDictionary) {
+        this.em = em;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.teamNameDictionary = teamNameDictionary;
+    }
+
+    public List<MemberTeamDTO> search(MemberSearchCondition condition) {
+        List<Long> teamIds = teamNameDictionary.resolve(condition.getTeamName());
+        int fieldMask = condition.fieldMask();
+        Query query = ReadOnlyQuery.hint(em.createQuery(template(MemberTeamQuerySpec.shape(condition, teamIds), fieldMask)));
+        List<Object> parameters = MemberTeamQuerySpec.parameters(condition, teamIds);
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+
+        DtoProjection<MemberTeamDTO> projection = MemberTeamQuerySpec.projection(fieldMask);
+        List<?> rows = query.getResultList();
+        List<MemberTeamDTO> result = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            // 컬럼이 하나면 Object[] 가 아니라 값 그대로 온다.
+            result.add(projection.newInstance(row instanceof Object[] ? (Object[]) row : new Object[]{row}));
+        }
+        return result;
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), buildNanos.sum());
+    }
+
+    private String template(int shape, int fieldMask) {
+        int key = fieldMask * MemberTeamQuerySpec.SHAPE_COUNT + shape;
+        String jpql = templates.get(key);
+        if (jpql != null) {
+            hits.increment();
+            return jpql;
+        }
+        // 동시에 만들어도 결과가 같으므로 락 없이 덮어쓴다.
+        long start = System.nanoTime();
+        jpql = MemberTeamQuerySpec.contentQuery(queryFactory, MemberTeamQuerySpec.templateCondition(shape),
+                MemberTeamQuerySpec.templateTeamIds(shape), fieldMask).toString();
+        buildNanos.add(System.nanoTime() - start);
+        misses.increment();
+        templates.set(key, jpql);
+        return jpql;
+    }
+
+    @Getter
+    @ToString
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final double hitRate;
+        private final long averageBuildNanos; // 표현식 생성 + JPQL 직렬화 평균 비용
+        private final long savedNanos; // 적중한 만큼 아낀 시간 (추정)
+
+        Stats(long hits, long misses, long buildNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.hitRate = hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+            this.averageBuildNanos = misses == 0 ? 0 : buildNanos / misses;
+            this.savedNanos = hits * averageBuildNanos;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package study.querydsl.repository;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원/팀 조인 결과의 off-heap 스냅샷 (querydsl.snapshot.enabled=true 일 때만)
+ * <p>
+ * 주기적으로 DB 에서 읽어 컬럼 단위 파일로 쓰고 메모리 매핑한다. 힙에는 팀 이름 사전 정도만 남는다.
+ * 파일 구조: 헤더 / id long[] / 나이 int[] / 팀 코드 int[] / username 끝 위치 int[] / 팀 id long[] / 팀 이름 끝 위치 int[] / username 바이트 / 팀 이름 바이트
+ * 팀 이름은 사전(코드) 으로 한 번만 저장하고, username 은 UTF-8 바이트를 이어 붙인다.
+ * <p>
+ * 검색은 매핑된 컬럼을 직접 훑어서 맞는 행 번호만 모으고, DTO 는 돌려줄 행(페이지)만 만든다.
+ * 스냅샷은 마지막으로 만든 시점의 데이터다. (최대 refresh-millis 만큼 늦다) 쓰기 트랜잭션 안에서는 쓰지 않고 DB 로 간다.
+ * refresh-millis 마다 이 서버의 변경 이벤트와 DB 의 행 수/최대 id 를 보고 바뀌었으면 다시 만든다.
+ * 다른 서버나 SQL 로 값만 바꾼 update 는 둘 다로 알 수 없으므로 max-age-millis 가 지나면 바뀐 것이 없어도 다시 만든다.
+ * <p>
+ * MappedByteBuffer 하나로 읽으므로 파일은 2GB 까지. 넘으면 스냅샷을 쓰지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberSnapshot {
+
+    private static final int MAGIC = 0x4d534e50; // "MSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 40;
+    private static final int NO_TEAM = -1;
+
+    private final boolean enabled;
+    private final long refreshMillis;
+    private final long maxAgeMillis;
+    private final Path directory;
+    private final int fetchSize;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong changeCount = new AtomicLong();
+    private final Object rebuildLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    private volatile Snapshot current; // 없으면 null
+    private long builtChangeCount = -1; // rebuildLock 으로 보호
+    private long[] builtWatermark; // rebuildLock 으로 보호
+    private volatile long lastBuildMillis;
+
+    public MemberSnapshot(@Value("${querydsl.snapshot.enabled:false}") boolean enabled,
+                          @Value("${querydsl.snapshot.refresh-millis:60000}") long refreshMillis,
+                          @Value("${querydsl.snapshot.max-age-millis:600000}") long maxAgeMillis,
+                          @Value("${querydsl.snapshot.directory:}") String directory,
+                          @Value("${querydsl.export.fetch-size:1000}") int fetchSize,
+                          EntityManager em,
+                          PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.refreshMillis = refreshMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.directory = Paths.get(hasText(directory) ? directory : System.getProperty("java.io.tmpdir"));
+        this.fetchSize = fetchSize;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 커밋된 값으로만 만든다. readOnly 가 아니므로 레플리카를 쓸 때도 프라이머리에서 읽는다. (이벤트 횟수와 맞춰 보는 기준이 늦으면 안된다)
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        Snapshot snapshot = current;
+        current = null;
+        if (snapshot != null) {
+            snapshot.delete();
+        }
+    }
+
+    /**
+     * @return 스냅샷으로 답할 수 없으면 empty. (꺼져 있음, 아직 안 만들어짐, 쓰기 트랜잭션 안) id 순서로 돌려준다.
+     */
+    public Optional<List<MemberTeamDTO>> search(MemberSearchCondition condition) {
+        Snapshot snapshot = usableSnapshot();
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+        int[] rows = snapshot.match(condition);
+        return Optional.of(snapshot.decode(rows, 0, rows.length, condition.fieldMask()));
+    }
+
+    /**
+     * 정렬 없는 페이지만. total 은 맞는 행 수를 그대로 쓰므로 카운트 쿼리가 없다.
+     */
+    public Optional<Page<MemberTeamDTO>> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        Snapshot snapshot = usableSnapshot();
+        if (snapshot == null || pageable.getSort().isSorted()) {
+            return Optional.empty();
+        }
+        int[] rows = snapshot.match(condition);
+        int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), rows.length) : 0;
+        int to = pageable.isPaged() ? (int) Math.min((long) from + pageable.getPageSize(), rows.length) : rows.length;
+        return Optional.of(new PageImpl<>(snapshot.decode(rows, from, to, condition.fieldMask()), pageable, rows.length));
+    }
+
+    /**
+     * 마지막으로 만든 뒤 바뀐 것이 있거나(이벤트, DB 행 수/최대 id) max-age-millis 가 지났으면 다시 만든다.
+     * @return 다시 만들었으면 true
+     */
+    public boolean refresh() {
+        synchronized (rebuildLock) {
+            long startChangeCount = changeCount.get();
+            long[] watermark = transactionTemplate.execute(status -> watermark()); // 만들기 전에 읽어야 그 사이 변경을 놓치지 않는다.
+            Snapshot snapshot = current;
+            if (snapshot != null && startChangeCount == builtChangeCount && Arrays.equals(watermark, builtWatermark)
+                    && System.currentTimeMillis() - snapshot.builtAt < maxAgeMillis) {
+                return false;
+            }
+            long start = System.nanoTime();
+            Snapshot built = transactionTemplate.execute(status -> build());
+            Snapshot previous = current;
+            current = built;
+            builtChangeCount = startChangeCount; // 만드는 중에 바뀐 것은 다음 refresh 에서 반영된다.
+            builtWatermark = watermark;
+            lastBuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (previous != null) {
+                previous.delete(); // 매핑은 GC 될 때까지 유효하므로 읽는 중인 스레드는 문제 없다.
+            }
+            log.info("member snapshot built: rows={}, bytes={}, {}ms", built.rows, built.fileBytes, lastBuildMillis);
+            return true;
+        }
+    }
+
+    public Stats getStats() {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            return new Stats(enabled, 0, 0, 0, 0, lastBuildMillis, null);
+        }
+        return new Stats(enabled, snapshot.rows, snapshot.teamNames.length, snapshot.fileBytes, snapshot.builtAt,
+                lastBuildMillis, snapshot.file.toString());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterEntityChangeCommit(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            changeCount.incrementAndGet();
+        }
+    }
+
+    private Snapshot usableSnapshot() {
+        if (!enabled) {
+            return null;
+        }
+        boolean writeTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return writeTransaction ? null : current;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            log.warn("member snapshot build failed - 이전 스냅샷을 계속 쓴다.", e);
+        }
+    }
+
+    // 이벤트가 없는 변경(다른 서버, SQL)의 insert/delete 를 알아채는 값. 인덱스만 보므로 스냅샷을 만드는 것보다 훨씬 싸다.
+    private long[] watermark() {
+        Tuple members = queryFactory.select(member.count(), member.id.max()).from(member).fetchOne();
+        Tuple teams = queryFactory.select(team.count(), team.id.max()).from(team).fetchOne();
+        return new long[]{
+                members.get(0, Long.class), orZero(members.get(1, Long.class)),
+                teams.get(0, Long.class), orZero(teams.get(1, Long.class))};
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0;
+    }
+
+    // 행 수를 미리 알 수 없으므로 컬럼별 임시 파일에 흘려 쓰고 마지막에 헤더와 함께 한 파일로 합친다.
+    private Snapshot build() {
+        List<Long> teamIds = new ArrayList<>();
+        List<byte[]> teamNames = new ArrayList<>();
+        Map<Long, Integer> teamCodes = new HashMap<>();
+        for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).orderBy(team.id.asc()).fetch()) {
+            teamCodes.put(tuple.get(team.id), teamIds.size());
+            teamIds.add(tuple.get(team.id));
+            String name = tuple.get(team.name);
+            teamNames.add(name != null ? name.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        }
+
+        Path file = directory.resolve("member-snapshot-" + System.currentTimeMillis() + "-" + System.nanoTime() + ".bin");
+        Path[] columns = new Path[5];
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = Files.createTempFile(directory, "member-snapshot-column", ".tmp");
+            }
+            int rows = 0;
+            long usernameBytes = 0;
+            try (DataOutputStream ids = open(columns[0]);
+                 DataOutputStream ages = open(columns[1]);
+                 DataOutputStream codes = open(columns[2]);
+                 DataOutputStream usernameEnds = open(columns[3]);
+                 DataOutputStream usernames = open(columns[4]);
+                 CloseableIterator<Tuple> iterator = queryFactory.select(member.id, member.username, member.age, member.team.id)
+                         .from(member)
+                         .orderBy(member.id.asc())
+                         .setHint(QueryHints.FETCH_SIZE, fetchSize)
+                         .setHint(QueryHints.READ_ONLY, true)
+                         .iterate()) {
+                while (iterator.hasNext()) {
+                    Tuple row = iterator.next();
+                    Long teamId = row.get(member.team.id);
+                    String username = row.get(member.username);
+                    byte[] usernameUtf8 = username != null ? username.getBytes(StandardCharsets.UTF_8) : new byte[0];
+                    usernameBytes += usernameUtf8.length;
+                    if (usernameBytes > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("member snapshot is larger than 2GB");
+                    }
+                    ids.writeLong(row.get(member.id));
+                    ages.writeInt(row.get(member.age));
+                    codes.writeInt(teamId != null ? teamCodes.getOrDefault(teamId, NO_TEAM) : NO_TEAM);
+                    usernameEnds.writeInt((int) usernameBytes);
+                    usernames.write(usernameUtf8);
+                    rows++;
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(teamIds.size()).putLong(System.currentTimeMillis());
+            TeamColumns teamColumns = teamColumns(teamIds, teamNames);
+            header.putLong(usernameBytes).putLong(teamColumns.nameBytes).flip();
+
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                out.write(header);
+                transfer(columns[0], out);
+                transfer(columns[1], out);
+                transfer(columns[2], out);
+                out.write(ByteBuffer.allocate(4).putInt(0).flip()); // username 시작 위치 0
+                transfer(columns[3], out);
+                out.write(ByteBuffer.wrap(teamColumns.idsAndEnds));
+                transfer(columns[4], out);
+                out.write(ByteBuffer.wrap(teamColumns.names));
+                if (out.size() > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("member snapshot is larger than 2GB");
+                }
+            }
+            return Snapshot.map(file);
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        } finally {
+            for (Path column : columns) {
+                deleteQuietly(column);
+            }
+        }
+    }
+
+    private static DataOutputStream open(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+    }
+
+    private static void transfer(Path column, FileChannel out) throws IOException {
+        try (FileChannel in = FileChannel.open(column, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    // 팀은 몇 개 안되므로 메모리에서 만든다.
+    private static TeamColumns teamColumns(List<Long> teamIds, List<byte[]> teamNames) {
+        int teams = teamIds.size();
+        ByteBuffer idsAndEnds = ByteBuffer.allocate(teams * 8 + (teams + 1) * 4);
+        for (Long teamId : teamIds) {
+            idsAndEnds.putLong(teamId);
+        }
+        int end = 0;
+        idsAndEnds.putInt(0);
+        for (byte[] name : teamNames) {
+            end += name.length;
+            idsAndEnds.putInt(end);
+        }
+        byte[] names = new byte[end];
+        int position = 0;
+        for (byte[] name : teamNames) {
+            System.arraycopy(name, 0, names, position, name.length);
+            position += name.length;
+        }
+        return new TeamColumns(idsAndEnds.array(), names);
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("could not delete {}", path, e);
+        }
+    }
+
+    @Getter
+    public static class Stats {
+        private final boolean enabled;
+        private final int rows;
+        private final int teams;
+        private final long fileBytes;
+        private final long builtAt;
+        private final long lastBuildMillis;
+        private final String file;
+
+        Stats(boolean enabled, int rows, int teams, long fileBytes, long builtAt, long lastBuildMillis, String file) {
+            this.enabled = enabled;
+            this.rows = rows;
+            this.teams = teams;
+            this.fileBytes = fileBytes;
+            this.builtAt = builtAt;
+            this.lastBuildMillis = lastBuildMillis;
+            this.file = file;
+        }
+    }
+
+    private static class TeamColumns {
+        private final byte[] idsAndEnds;
+        private final byte[] names;
+        private final int nameBytes;
+
+        TeamColumns(byte[] idsAndEnds, byte[] names) {
+            this.idsAndEnds = idsAndEnds;
+            this.names = names;
+            this.nameBytes = names.length;
+        }
+    }
+
+    // 매핑된 파일. 절대 위치 get 만 쓰므로 여러 스레드가 같이 읽어도 된다.
+    private static class Snapshot {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final long fileBytes;
+        private final int rows;
+        private final long builtAt;
+        private final int ids;
+        private final int ages;
+        private final int teamCodes;
+        private final int usernameEnds;
+        private final int usernames;
+        private final long[] teamIds; // 팀 사전은 작아서 힙에 풀어 둔다.
+        private final String[] teamNames;
+
+        private Snapshot(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+            this.fileBytes = buffer.capacity();
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("not a member snapshot: " + file);
+            }
+            this.rows = buffer.getInt(8);
+            int teams = buffer.getInt(12);
+            this.builtAt = buffer.getLong(16);
+            int usernameBytes = (int) buffer.getLong(24);
+
+            this.ids = HEADER_BYTES;
+            this.ages = ids + rows * 8;
+            this.teamCodes = ages + rows * 4;
+            this.usernameEnds = teamCodes + rows * 4; // rows + 1 개 (0 부터)
+            int teamIdsStart = usernameEnds + (rows + 1) * 4;
+            int teamNameEnds = teamIdsStart + teams * 8;
+            this.usernames = teamNameEnds + (teams + 1) * 4;
+            int teamNameBytes = usernames + usernameBytes;
+
+            this.teamIds = new long[teams];
+            this.teamNames = new String[teams];
+            for (int code = 0; code < teams; code++) {
+                teamIds[code] = buffer.getLong(teamIdsStart + code * 8);
+                int start = buffer.getInt(teamNameEnds + code * 4);
+                int end = buffer.getInt(teamNameEnds + (code + 1) * 4);
+                teamNames[code] = string(teamNameBytes + start, end - start);
+            }
+        }
+
+        static Snapshot map(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return new Snapshot(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        // 맞는 행 번호. 행은 id 순서다.
+        int[] match(MemberSearchCondition condition) {
+            int ageGoe = condition.getAgeGoe() != null ? condition.getAgeGoe() : Integer.MIN_VALUE;
+            int ageLoe = condition.getAgeLoe() != null ? condition.getAgeLoe() : Integer.MAX_VALUE;
+            byte[] username = hasText(condition.getUsername()) ? condition.getUsername().getBytes(StandardCharsets.UTF_8) : null;
+            boolean[] teamMatches = null;
+            if (hasText(condition.getTeamName())) {
+                teamMatches = new boolean[teamNames.length];
+                boolean any = false;
+                for (int code = 0; code < teamNames.length; code++) {
+                    teamMatches[code] = condition.getTeamName().equals(teamNames[code]);
+                    any |= teamMatches[code];
+                }
+                if (!any) {
+                    return new int[0];
+                }
+            }
+
+            int[] matched = new int[16];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                int age = buffer.getInt(ages + row * 4);
+                if (age < ageGoe || age > ageLoe) {
+                    continue;
+                }
+                if (teamMatches != null) {
+                    int code = buffer.getInt(teamCodes + row * 4);
+                    if (code == NO_TEAM || !teamMatches[code]) {
+                        continue;
+                    }
+                }
+                if (username != null && !usernameEquals(row, username)) {
+                    continue;
+                }
+                if (count == matched.length) {
+                    matched = Arrays.copyOf(matched, count * 2);
+                }
+                matched[count++] = row;
+            }
+            return Arrays.copyOf(matched, count);
+        }
+
+        // DB 로 조회할 때처럼 고르지 않은 필드는 null (나이는 0) 이고, username 은 고른 경우만 디코딩한다.
+        List<MemberTeamDTO> decode(int[] rowNumbers, int from, int to, int fieldMask) {
+            if (from >= to) {
+                return Collections.emptyList();
+            }
+            boolean memberId = MemberTeamField.MEMBER_ID.in(fieldMask);
+            boolean username = MemberTeamField.USERNAME.in(fieldMask);
+            boolean age = MemberTeamField.AGE.in(fieldMask);
+            boolean teamId = MemberTeamField.TEAM_ID.in(fieldMask);
+            boolean teamName = MemberTeamField.TEAM_NAME.in(fieldMask);
+            List<MemberTeamDTO> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int row = rowNumbers[i];
+                int code = buffer.getInt(teamCodes + row * 4);
+                String name = null;
+                if (username) {
+                    int start = buffer.getInt(usernameEnds + row * 4);
+                    int end = buffer.getInt(usernameEnds + (row + 1) * 4);
+                    name = string(usernames + start, end - start);
+                }
+                result.add(new MemberTeamDTO(memberId ? buffer.getLong(ids + row * 8) : null, name,
+                        age ? buffer.getInt(ages + row * 4) : 0,
+                        teamId && code != NO_TEAM ? teamIds[code] : null,
+                        teamName && code != NO_TEAM ? teamNames[code] : null));
+            }
+            return result;
+        }
+
+        void delete() {
+            deleteQuietly(file);
+        }
+
+        // 문자열을 만들지 않고 매핑된 바이트와 바로 비교한다.
+        private boolean usernameEquals(int row, byte[] username) {
+            int start = buffer.getInt(usernameEnds + row * 4);
+            int end = buffer.getInt(usernameEnds + (row + 1) * 4);
+            if (end - start != username.length) {
+                return false;
+            }
+            int base = usernames + start;
+            for (int i = 0; i < username.length; i++) {
+                if (buffer.get(base + i) != username[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String string(int position, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate(); // position 을 바꾸므로 복사본에서 읽는다.
+            view.position(position);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
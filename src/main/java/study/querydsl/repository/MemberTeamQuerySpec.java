@@ -0,0 +1,272 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.repository.support.DtoProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberTeamDTO 검색 쿼리의 프로젝션, 조인, 검색 조건을 한 곳에 모아둔다.
+ * MemberJpaRepository, MemberRepositoryImpl 의 검색 메서드들이 모두 같은 쿼리를 쓰도록 한다.
+ * <p>
+ * teamIds 를 받는 메서드는 팀 이름을 미리 id 로 바꾼 경우(TeamNameDictionary)다. team.name 대신 member.team.id 로 거르고,
+ * 팀 컬럼이 필요 없는 카운트 쿼리는 team 조인을 하지 않는다. teamIds 가 null 이면 이름으로 거른다.
+ * <p>
+ * 콘텐츠 쿼리는 검색 조건의 fields(MemberTeamField) 에 있는 컬럼만 select 하고, 팀 이름을 select 하거나 팀 이름으로 거를 때만 조인한다.
+ * 팀 id 만 필요하면 member.team_id 컬럼을 그대로 쓴다. 고르지 않은 필드는 DTO 에서 null(나이는 0) 이다.
+ */
+public final class MemberTeamQuerySpec {
+
+    // 검색 조건 모양(shape). 값이 있는 조건의 조합이다. (TEAM_NAME, TEAM_ID 는 같이 켜지지 않는다)
+    public static final int USERNAME = 1;
+    public static final int TEAM_NAME = 1 << 1;
+    public static final int AGE_GOE = 1 << 2;
+    public static final int AGE_LOE = 1 << 3;
+    public static final int TEAM_ID = 1 << 4; // 팀 이름을 id 로 바꿔서 거르는 경우. TEAM_NAME 대신 켜진다.
+    public static final int SHAPE_COUNT = 1 << 5;
+
+    // QMemberTeamDTO 와 같은 select 절이지만 행마다 리플렉션으로 생성자를 부르지 않는다.
+    private static final DtoProjection<MemberTeamDTO> PROJECTION = DtoProjection.of(MemberTeamDTO.class,
+            row -> new MemberTeamDTO((Long) row[0], (String) row[1], (Integer) row[2], (Long) row[3], (String) row[4]),
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName"));
+
+    // 필드 조합별 프로젝션. 전부 고른 경우는 PROJECTION 그대로
+    private static final DtoProjection<?>[] PROJECTIONS = new DtoProjection<?>[MemberTeamField.ALL + 1];
+
+    static {
+        for (int fieldMask = 1; fieldMask < MemberTeamField.ALL; fieldMask++) {
+            PROJECTIONS[fieldMask] = newProjection(fieldMask);
+        }
+        PROJECTIONS[MemberTeamField.ALL] = PROJECTION;
+    }
+
+    private MemberTeamQuerySpec() {
+    }
+
+    public static DtoProjection<MemberTeamDTO> projection() {
+        return PROJECTION;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static DtoProjection<MemberTeamDTO> projection(int fieldMask) {
+        return (DtoProjection<MemberTeamDTO>) PROJECTIONS[fieldMask];
+    }
+
+    // 팀 이름을 select 하거나, 팀 이름을 id 로 못 바꿔서 team.name 으로 걸러야 할 때만 조인이 필요하다.
+    public static boolean needsTeamJoin(MemberSearchCondition condition, List<Long> teamIds, int fieldMask) {
+        return MemberTeamField.TEAM_NAME.in(fieldMask) || (teamIds == null && hasText(condition.getTeamName()));
+    }
+
+    // where 절에 그대로 넘기면 된다. null 조건은 querydsl 이 무시한다.
+    public static Predicate[] where(MemberSearchCondition condition) {
+        return where(condition, null);
+    }
+
+    public static Predicate[] where(MemberSearchCondition condition, List<Long> teamIds) {
+        return new Predicate[]{
+                usernameEq(condition.getUsername()),
+                teamIds != null ? teamIdIn(teamIds) : teamNameEq(condition.getTeamName()),
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    // 벌크 update/delete 는 조인을 쓸 수 없으므로 팀 이름은 서브쿼리로 거른다.
+    public static Predicate[] bulkWhere(MemberSearchCondition condition) {
+        return new Predicate[]{
+                usernameEq(condition.getUsername()),
+                hasText(condition.getTeamName())
+                        ? member.team.id.in(JPAExpressions.select(team.id).from(team).where(team.name.eq(condition.getTeamName())))
+                        : null,
+                ageGoe(condition.getAgeGoe()),
+                ageLoe(condition.getAgeLoe())
+        };
+    }
+
+    public static int shape(MemberSearchCondition condition) {
+        return shape(condition, null);
+    }
+
+    public static int shape(MemberSearchCondition condition, List<Long> teamIds) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) {
+            shape |= USERNAME;
+        }
+        if (teamIds != null) {
+            shape |= TEAM_ID;
+        } else if (hasText(condition.getTeamName())) {
+            shape |= TEAM_NAME;
+        }
+        if (condition.getAgeGoe() != null) {
+            shape |= AGE_GOE;
+        }
+        if (condition.getAgeLoe() != null) {
+            shape |= AGE_LOE;
+        }
+        return shape;
+    }
+
+    // where() 에 들어가는 순서 그대로의 파라미터 값. JPQL 의 ?1, ?2 ... 에 순서대로 바인딩된다.
+    public static List<Object> parameters(MemberSearchCondition condition) {
+        return parameters(condition, null);
+    }
+
+    public static List<Object> parameters(MemberSearchCondition condition, List<Long> teamIds) {
+        List<Object> parameters = new ArrayList<>(4);
+        if (hasText(condition.getUsername())) {
+            parameters.add(condition.getUsername());
+        }
+        if (teamIds != null) {
+            parameters.add(teamIds);
+        } else if (hasText(condition.getTeamName())) {
+            parameters.add(condition.getTeamName());
+        }
+        if (condition.getAgeGoe() != null) {
+            parameters.add(condition.getAgeGoe());
+        }
+        if (condition.getAgeLoe() != null) {
+            parameters.add(condition.getAgeLoe());
+        }
+        return parameters;
+    }
+
+    /**
+     * JPQL 템플릿을 만들기 위한 조건. querydsl 은 같은 값의 상수를 하나의 파라미터로 합치므로
+     * (ageGoe == ageLoe 이면 ?3 하나만 생긴다) 서로 다른 값을 넣어 파라미터 순서가 항상 where 순서와 같게 한다.
+     */
+    public static MemberSearchCondition templateCondition(int shape) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername((shape & USERNAME) != 0 ? "?username" : null);
+        condition.setTeamName((shape & TEAM_NAME) != 0 ? "?teamName" : null);
+        condition.setAgeGoe((shape & AGE_GOE) != 0 ? -1 : null);
+        condition.setAgeLoe((shape & AGE_LOE) != 0 ? -2 : null);
+        return condition;
+    }
+
+    // 원소가 하나면 querydsl 이 in 대신 = 로 만들므로 템플릿은 항상 두 개로 만든다. (실제 바인딩은 목록 그대로)
+    public static List<Long> templateTeamIds(int shape) {
+        return (shape & TEAM_ID) != 0 ? Arrays.asList(-3L, -4L) : null;
+    }
+
+    public static JPAQuery<MemberTeamDTO> contentQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return contentQuery(queryFactory, condition, null);
+    }
+
+    public static JPAQuery<MemberTeamDTO> contentQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition, List<Long> teamIds) {
+        return contentQuery(queryFactory, condition, teamIds, condition.fieldMask());
+    }
+
+    public static JPAQuery<MemberTeamDTO> contentQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition, List<Long> teamIds,
+                                                       int fieldMask) {
+        JPAQuery<MemberTeamDTO> query = queryFactory
+                .select(projection(fieldMask))
+                .from(member);
+        if (needsTeamJoin(condition, teamIds, fieldMask)) {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(where(condition, teamIds));
+    }
+
+    // 콘텐츠 쿼리는 복잡하나 카운트 쿼리는 단순할때 따로 최적화 할 수 있도록 분리
+    public static JPAQuery<Long> countQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition) {
+        return countQuery(queryFactory, condition, null);
+    }
+
+    // 다대일 left join 은 행 수를 바꾸지 않으므로 팀 이름으로 거를 때만 조인한다.
+    public static JPAQuery<Long> countQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition, List<Long> teamIds) {
+        JPAQuery<Long> query = queryFactory
+                .select(member.count())
+                .from(member);
+        if (teamIds == null && hasText(condition.getTeamName())) {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(where(condition, teamIds));
+    }
+
+    // 행이 있는지만 볼 때 (BOUNDED 카운트). 카운트 쿼리처럼 팀 이름으로 거를 때만 조인한다.
+    public static JPAQuery<Long> idQuery(JPAQueryFactory queryFactory, MemberSearchCondition condition, List<Long> teamIds) {
+        JPAQuery<Long> query = queryFactory
+                .select(member.id)
+                .from(member);
+        if (teamIds == null && hasText(condition.getTeamName())) {
+            query.leftJoin(member.team, team);
+        }
+        return query.where(where(condition, teamIds));
+    }
+
+    // 고른 필드만 순서대로 select 하고, 행의 값을 같은 순서로 DTO 에 넣는다.
+    private static DtoProjection<MemberTeamDTO> newProjection(int fieldMask) {
+        boolean memberId = MemberTeamField.MEMBER_ID.in(fieldMask);
+        boolean username = MemberTeamField.USERNAME.in(fieldMask);
+        boolean age = MemberTeamField.AGE.in(fieldMask);
+        boolean teamId = MemberTeamField.TEAM_ID.in(fieldMask);
+        boolean teamName = MemberTeamField.TEAM_NAME.in(fieldMask);
+
+        List<Expression<?>> args = new ArrayList<>(5);
+        if (memberId) {
+            args.add(member.id.as("memberId"));
+        }
+        if (username) {
+            args.add(member.username);
+        }
+        if (age) {
+            args.add(member.age);
+        }
+        if (teamId) {
+            args.add(teamName ? team.id.as("teamId") : member.team.id.as("teamId")); // 조인이 없으면 외래 키 컬럼
+        }
+        if (teamName) {
+            args.add(team.name.as("teamName"));
+        }
+        return DtoProjection.of(MemberTeamDTO.class, row -> {
+            int i = 0;
+            return new MemberTeamDTO(
+                    memberId ? (Long) row[i++] : null,
+                    username ? (String) row[i++] : null,
+                    age ? (Integer) row[i++] : 0,
+                    teamId ? (Long) row[i++] : null,
+                    teamName ? (String) row[i] : null);
+        }, args.toArray(new Expression<?>[0]));
+    }
+
+    // 아래와 같이 만들면, 함수들을 조립해서 사용할 수 있다.
+    // booleanexpression으로 하면 and로 깔끔하게 처리 된다.
+    public static BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    public static BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    // 빈 목록이면 아무것도 안 맞는다. (id 는 null 이 아니다)
+    public static BooleanExpression teamIdIn(List<Long> teamIds) {
+        return teamIds.isEmpty() ? member.id.isNull() : member.team.id.in(teamIds);
+    }
+
+    public static BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    public static BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
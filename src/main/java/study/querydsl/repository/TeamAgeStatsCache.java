@@ -0,0 +1,228 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamAgeStatsDTO;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberAgeState;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.ReadOnlyQuery;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀별 회원 나이 통계(count, sum, avg, max, min)를 메모리에 유지한다. 조회는 DB 를 타지 않는다.
+ * <p>
+ * 회원이 추가/수정/삭제되면 커밋 후에 바뀐 차이만 반영한다. (변경 전 값은 {@link study.querydsl.entity.ChangeTracked})
+ * 벌크 update/delete 는 어떤 회원이 바뀌었는지 알 수 없으므로 다음 조회 때 DB 에서 다시 집계한다.
+ * 처음 조회할 때도 DB 에서 한번 집계한다.
+ * <p>
+ * 팀 이름은 유일하다고 본다. (같은 이름의 팀이 여럿이면 먼저 찾은 팀의 통계가 나온다)
+ */
+@Component
+public class TeamAgeStatsCache {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, TeamStats> statsByTeamId = new HashMap<>();
+    private final Map<String, Long> teamIdByName = new HashMap<>();
+    private boolean stale = true;
+    private long changeCount; // 다시 집계하는 동안 반영된 변경이 있으면 결과를 버린다.
+
+    public TeamAgeStatsCache(EntityManager em, PlatformTransactionManager transactionManager) {
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 커밋된 값으로만 집계한다. readOnly 로 두면 레플리카(ReadWriteRoutingDataSource)로 가서 늦은 값으로 집계할 수 있으므로 프라이머리에서 읽는다.
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public List<TeamAgeStatsDTO> findAll() {
+        ensureLoaded();
+        synchronized (this) {
+            List<TeamAgeStatsDTO> result = new ArrayList<>(statsByTeamId.size());
+            for (TeamStats stats : statsByTeamId.values()) {
+                result.add(stats.toDTO());
+            }
+            result.sort(Comparator.comparing(TeamAgeStatsDTO::getTeamName, Comparator.nullsLast(Comparator.naturalOrder())));
+            return result;
+        }
+    }
+
+    // 없는 팀이면 null
+    public TeamAgeStatsDTO find(String teamName) {
+        ensureLoaded();
+        synchronized (this) {
+            Long teamId = teamIdByName.get(teamName);
+            TeamStats stats = teamId != null ? statsByTeamId.get(teamId) : null;
+            return stats != null ? stats.toDTO() : null;
+        }
+    }
+
+    public synchronized void invalidate() {
+        stale = true;
+        changeCount++;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterEntityChangeCommit(EntityChangedEvent event) {
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+                invalidate();
+            }
+        } else if (event.isAbout(Member.class)) {
+            applyMemberChange((MemberAgeState) event.getPreviousState(), (MemberAgeState) event.getCurrentState());
+        } else if (event.isAbout(Team.class)) {
+            applyTeamChange((Team) event.getEntity(), event.getType());
+        }
+    }
+
+    private synchronized void applyMemberChange(MemberAgeState previous, MemberAgeState current) {
+        changeCount++;
+        if (stale) {
+            return; // 어차피 다시 집계한다.
+        }
+        if (previous != null && previous.getTeamId() != null) {
+            TeamStats stats = statsByTeamId.get(previous.getTeamId());
+            if (stats == null || !stats.remove(previous.getAge())) {
+                stale = true; // 모르는 상태. 다음 조회 때 다시 집계
+                return;
+            }
+        }
+        if (current != null && current.getTeamId() != null) {
+            TeamStats stats = statsByTeamId.get(current.getTeamId());
+            if (stats == null) {
+                stale = true;
+                return;
+            }
+            stats.add(current.getAge());
+        }
+    }
+
+    private synchronized void applyTeamChange(Team team, EntityChangedEvent.Type type) {
+        changeCount++;
+        if (stale) {
+            return;
+        }
+        TeamStats stats = statsByTeamId.get(team.getId());
+        if (type == EntityChangedEvent.Type.REMOVE) {
+            if (stats != null) {
+                statsByTeamId.remove(team.getId());
+                teamIdByName.remove(stats.teamName, team.getId());
+            }
+            return;
+        }
+        if (stats == null) {
+            stats = new TeamStats(team.getName());
+            statsByTeamId.put(team.getId(), stats);
+        } else if (!Objects.equals(stats.teamName, team.getName())) {
+            teamIdByName.remove(stats.teamName, team.getId());
+            stats.teamName = team.getName();
+        }
+        teamIdByName.putIfAbsent(team.getName(), team.getId());
+    }
+
+    private void ensureLoaded() {
+        long startChangeCount;
+        synchronized (this) {
+            if (!stale) {
+                return;
+            }
+            startChangeCount = changeCount;
+        }
+        Map<Long, TeamStats> loaded = transactionTemplate.execute(status -> load());
+        synchronized (this) {
+            // 집계하는 사이에 커밋된 변경은 결과에 들어갔는지 알 수 없으므로 이번 결과는 쓰고, 다음에 다시 집계한다.
+            statsByTeamId.clear();
+            teamIdByName.clear();
+            statsByTeamId.putAll(loaded);
+            loaded.forEach((teamId, stats) -> teamIdByName.putIfAbsent(stats.teamName, teamId));
+            stale = changeCount != startChangeCount;
+        }
+    }
+
+    // QuerydslBasicTest.group 과 같은 집계지만 min/max 를 증분으로 유지하려고 나이별 인원까지 가져온다.
+    private Map<Long, TeamStats> load() {
+        Map<Long, TeamStats> loaded = new HashMap<>();
+        List<Tuple> teams = ReadOnlyQuery.hint(queryFactory.select(team.id, team.name)
+                .from(team))
+                .fetch();
+        for (Tuple tuple : teams) {
+            loaded.put(tuple.get(team.id), new TeamStats(tuple.get(team.name)));
+        }
+        List<Tuple> ageCounts = ReadOnlyQuery.hint(queryFactory.select(member.team.id, member.age, member.count())
+                .from(member)
+                .where(member.team.isNotNull())
+                .groupBy(member.team.id, member.age))
+                .fetch();
+        for (Tuple tuple : ageCounts) {
+            TeamStats stats = loaded.get(tuple.get(member.team.id));
+            if (stats != null) {
+                stats.add(tuple.get(member.age), tuple.get(member.count()));
+            }
+        }
+        return loaded;
+    }
+
+    private static class TeamStats {
+        private String teamName;
+        private long count;
+        private long sum;
+        private final TreeMap<Integer, Long> ageCounts = new TreeMap<>(); // 나이별 인원. min/max 를 빼도 바로 찾는다.
+
+        TeamStats(String teamName) {
+            this.teamName = teamName;
+        }
+
+        void add(int age) {
+            add(age, 1);
+        }
+
+        void add(int age, long n) {
+            count += n;
+            sum += (long) age * n;
+            ageCounts.merge(age, n, Long::sum);
+        }
+
+        // 없는 나이를 빼려고 하면 false
+        boolean remove(int age) {
+            Long n = ageCounts.get(age);
+            if (n == null) {
+                return false;
+            }
+            if (n == 1) {
+                ageCounts.remove(age);
+            } else {
+                ageCounts.put(age, n - 1);
+            }
+            count--;
+            sum -= age;
+            return true;
+        }
+
+        TeamAgeStatsDTO toDTO() {
+            if (count == 0) {
+                return new TeamAgeStatsDTO(teamName, 0, 0, 0, 0, 0);
+            }
+            return new TeamAgeStatsDTO(teamName, count, sum, (double) sum / count, ageCounts.lastKey(), ageCounts.firstKey());
+        }
+    }
+}
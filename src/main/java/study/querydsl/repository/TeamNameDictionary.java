@@ -0,0 +1,277 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 팀 이름 -> 팀 id 사전 (querydsl.team-dictionary.enabled)
+ * <p>
+ * 검색 조건의 팀 이름을 먼저 id 로 바꿔서 member.team_id 로 거른다. team 조인 없이 member 인덱스(team_id, age)를 탄다.
+ * 팀 이름은 유일하지 않으므로 이름 하나에 id 가 여러 개일 수 있다.
+ * <p>
+ * 사전에는 커밋된 팀만 있으므로 쓰기 트랜잭션 안에서는 쓰지 않는다. (null -> 조인으로 거른다)
+ * 커밋된 팀 변경은 엔티티 이벤트로 바로 반영하고, 벌크 변경이 있으면 다시 읽는다.
+ * 팀이 max-size 보다 많으면 사전을 만들지 않는다.
+ * <p>
+ * 다른 서버나 SQL 로 넣은 팀은 이벤트가 없어서 모른다. 그래서 사전에 없는 이름은 빈 결과가 아니라 조인으로 거르고,
+ * ttl-millis 가 지나면 사전을 다시 읽는다.
+ * <p>
+ * 다시 읽는 일은 team-dictionary 스레드 하나가 한다. 조회하는 쪽은 커넥션을 하나 더 잡지 않고,
+ * 다 읽을 때까지 null 을 돌려받아 조인으로 거른다. 읽는 동안 커밋된 팀 변경은 모아뒀다가 다 읽은 뒤에 반영한다.
+ */
+@Slf4j
+@Component
+public class TeamNameDictionary {
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final Object reloadLock = new Object(); // 한 번에 하나만 읽는다.
+    private final ExecutorService reloader; // 꺼져 있으면 null
+
+    // 아래는 this 로 보호
+    private Names names; // null 이면 다시 읽어야 한다.
+    private boolean tooLarge;
+    private long expiresAt; // 이 시각이 지나면 다시 읽는다.
+    private boolean reloadRequested;
+    private List<EntityChangedEvent> pending; // 읽는 중에만 null 이 아니다.
+    private boolean missedChanges; // 읽는 중에 모아둘 수 없는 변경(벌크)이 있었다.
+
+    public TeamNameDictionary(@Value("${querydsl.team-dictionary.enabled:true}") boolean enabled,
+                              @Value("${querydsl.team-dictionary.max-size:100000}") int maxSize,
+                              @Value("${querydsl.team-dictionary.ttl-millis:60000}") long ttlMillis,
+                              EntityManager em,
+                              PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.queryFactory = new JPAQueryFactory(em);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 커밋된 값으로만 만든다. 늦은 레플리카에서 읽으면 읽는 동안 받은 팀 이벤트를 다시 반영해도 빠진 팀이 생기므로 프라이머리에서 읽는다.
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.reloader = enabled ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "team-dictionary");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    /**
+     * @return 팀 이름의 id 목록. 사전에 없는 이름이거나 사전을 쓸 수 없으면(꺼져 있음, 이름 없음, 쓰기 트랜잭션, 팀이 너무 많음, 읽는 중) null
+     */
+    public List<Long> resolve(String teamName) {
+        if (!enabled || !hasText(teamName) || isWriteTransaction()) {
+            return null;
+        }
+        synchronized (this) {
+            if (isFresh()) {
+                return names != null ? names.idsByName.get(teamName) : null;
+            }
+        }
+        requestReload();
+        return null;
+    }
+
+    /**
+     * 사전이 없거나 오래됐으면 지금 스레드에서 다시 읽는다. 다른 스레드가 읽는 중이면 끝날 때까지 기다린다.
+     * @return 다시 읽었으면 true
+     */
+    public boolean reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                if (!enabled || isFresh()) {
+                    reloadRequested = false;
+                    return false;
+                }
+                pending = new ArrayList<>();
+                missedChanges = false;
+            }
+
+            Names loaded = null;
+            boolean finished = false;
+            boolean again;
+            try {
+                loaded = transactionTemplate.execute(status -> load());
+                finished = true;
+            } finally {
+                synchronized (this) {
+                    List<EntityChangedEvent> changes = pending;
+                    pending = null;
+                    reloadRequested = false;
+                    if (finished) {
+                        install(loaded, changes);
+                    }
+                    again = finished && !isFresh();
+                }
+            }
+            if (again) {
+                requestReload();
+            }
+            return finished;
+        }
+    }
+
+    public synchronized void invalidate() {
+        names = null;
+        tooLarge = false;
+        missedChanges = true;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void afterEntityChangeCommit(EntityChangedEvent event) {
+        if (!enabled || !event.isAbout(Team.class)) {
+            return;
+        }
+        if (event.getType() == EntityChangedEvent.Type.BULK) {
+            invalidate();
+            return;
+        }
+        synchronized (this) {
+            if (pending != null && !missedChanges) {
+                pending.add(event); // 팀 변경은 드물어서 개수 제한 없이 모은다.
+            }
+            if (names != null) {
+                apply(names, event);
+            }
+        }
+    }
+
+    private boolean isFresh() {
+        return (names != null || tooLarge) && System.currentTimeMillis() < expiresAt;
+    }
+
+    private void requestReload() {
+        synchronized (this) {
+            if (reloadRequested) {
+                return;
+            }
+            reloadRequested = true;
+        }
+        try {
+            reloader.execute(this::reloadQuietly);
+        } catch (RejectedExecutionException e) {
+            log.debug("team dictionary reload rejected (shutting down)");
+        }
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.warn("team dictionary reload failed", e); // 다음 조회 때 다시 시도한다.
+        }
+    }
+
+    // this 안에서. 읽는 동안 커밋된 변경을 순서대로 다시 반영한다. 읽을 때 이미 본 변경이면 같은 값이 된다.
+    // 벌크 변경이 있었으면 결과는 두고 바로 한번 더 읽는다.
+    private void install(Names loaded, List<EntityChangedEvent> changes) {
+        names = loaded;
+        tooLarge = loaded == null;
+        if (loaded != null) {
+            for (EntityChangedEvent change : changes) {
+                apply(loaded, change);
+            }
+        }
+        expiresAt = missedChanges ? 0 : System.currentTimeMillis() + ttlMillis;
+    }
+
+    private void apply(Names target, EntityChangedEvent event) {
+        Team changed = (Team) event.getEntity();
+        target.remove(changed.getId());
+        if (event.getType() != EntityChangedEvent.Type.REMOVE) {
+            target.put(changed.getId(), changed.getName());
+        }
+        if (target.nameById.size() > maxSize) {
+            log.info("team dictionary disabled: more than {} teams", maxSize);
+            names = null;
+            tooLarge = true;
+        }
+    }
+
+    private Names load() {
+        List<Tuple> rows = queryFactory
+                .select(team.id, team.name)
+                .from(team)
+                .limit(maxSize + 1L)
+                .fetch();
+        if (rows.size() > maxSize) {
+            log.info("team dictionary disabled: more than {} teams", maxSize);
+            return null;
+        }
+        Names loaded = new Names();
+        for (Tuple row : rows) {
+            loaded.put(row.get(team.id), row.get(team.name));
+        }
+        return loaded;
+    }
+
+    private static boolean isWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // resolve 가 돌려준 목록을 락 밖에서 읽으므로 목록은 고치지 않고 바꿔 끼운다.
+    private static class Names {
+        private final Map<String, List<Long>> idsByName = new HashMap<>();
+        private final Map<Long, String> nameById = new HashMap<>();
+
+        void put(Long id, String name) {
+            nameById.put(id, name);
+            List<Long> ids = idsByName.get(name);
+            List<Long> grown = new ArrayList<>(ids == null ? 1 : ids.size() + 1);
+            if (ids != null) {
+                grown.addAll(ids);
+            }
+            grown.add(id);
+            idsByName.put(name, Collections.unmodifiableList(grown));
+        }
+
+        void remove(Long id) {
+            String name = nameById.remove(id);
+            if (name == null) {
+                return;
+            }
+            List<Long> remaining = new ArrayList<>(idsByName.get(name));
+            remaining.remove(id);
+            if (remaining.isEmpty()) {
+                idsByName.remove(name);
+            } else {
+                idsByName.put(name, Collections.unmodifiableList(remaining));
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+import study.querydsl.dto.MemberDTO;
+import study.querydsl.dto.TeamMembersDTO;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.support.Querydsl4RepositorySupport;
+import study.querydsl.repository.support.ReadOnlyQuery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@Repository
+@Transactional(readOnly = true)
+public class TeamQueryRepository extends Querydsl4RepositorySupport {
+
+    private final int batchSize;
+
+    public TeamQueryRepository(@Value("${querydsl.team-members.batch-size:500}") int batchSize) {
+        super(Team.class);
+        Assert.isTrue(batchSize > 0, "querydsl.team-members.batch-size must be greater than 0");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 팀 한 페이지와 그 팀들의 회원을 가져온다.
+     * team.getMembers() 를 팀마다 순회하면 팀 수만큼 쿼리가 나가지만(N+1),
+     * 여기서는 팀 조회 1번 + 회원 in 조회 1번(팀이 batchSize 보다 많으면 batchSize 단위로 나눠서)으로 끝난다.
+     */
+    public List<TeamMembersDTO> findTeamsWithMembers(Pageable pageable) {
+        List<Tuple> teams = ReadOnlyQuery.hint(getQueryFactory().select(team.id, team.name))
+                .from(team)
+                .orderBy(team.id.asc())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        Map<Long, TeamMembersDTO> result = new LinkedHashMap<>();
+        for (Tuple row : teams) {
+            Long teamId = row.get(team.id);
+            result.put(teamId, new TeamMembersDTO(teamId, row.get(team.name)));
+        }
+
+        List<Long> teamIds = new ArrayList<>(result.keySet());
+        for (int from = 0; from < teamIds.size(); from += batchSize) {
+            List<Long> batch = teamIds.subList(from, Math.min(from + batchSize, teamIds.size()));
+            List<Tuple> members = ReadOnlyQuery.hint(getQueryFactory().select(member.team.id, member.username, member.age))
+                    .from(member)
+                    .where(member.team.id.in(batch)) // FK 컬럼으로 바로 조회. 팀 조인 없음
+                    .orderBy(member.id.asc())
+                    .fetch();
+            for (Tuple row : members) {
+                result.get(row.get(member.team.id))
+                        .getMembers()
+                        .add(new MemberDTO(row.get(member.username), row.get(member.age)));
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+}
@@ -0,0 +1,294 @@
+package study.querydsl.repository.support;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.monitor.RepositoryMetrics;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 페이징 카운트 쿼리 실행기.
+ * <p>
+ * 1. 같은 검색 조건의 total 을 TTL/최대 개수 제한이 있는 캐시에 보관한다. Member, Team 이 바뀌면 비운다.
+ * 2. (옵션) 카운트 쿼리를 별도 스레드에서 콘텐츠 쿼리와 동시에 실행한다. 응답 시간이 합이 아니라 max 가 된다.
+ * <p>
+ * 비동기 카운트는 다른 커넥션에서 실행되므로 쓰기 트랜잭션 안에서는 아직 커밋 안된 데이터가 보이지 않는다.
+ * 그래서 쓰기 트랜잭션이 진행중이면 항상 같은 스레드에서 실행한다.
+ * <p>
+ * 콘텐츠 / 카운트 쿼리 시간은 따로 지표로 남긴다. (RepositoryMetrics)
+ * <p>
+ * 3. getCountedPage 는 요청마다 카운트 전략(CountStrategy)을 고른다. 정확한 total 이 필요 없는 무한 스크롤은 카운트를 아예 안한다.
+ */
+@Component
+public class CountQueryExecutor {
+
+    private final long ttlMillis;
+    private final int maxSize;
+    private final Map<Object, CachedCount> cache;
+    private final ThreadPoolExecutor executor; // 비동기 미사용이면 null
+    private final long countBound;
+    private RepositoryMetrics metrics = RepositoryMetrics.disabled();
+
+    public CountQueryExecutor(@Value("${querydsl.count.cache.ttl-millis:30000}") long ttlMillis,
+                              @Value("${querydsl.count.cache.max-size:1000}") int maxSize,
+                              @Value("${querydsl.count.async.enabled:false}") boolean asyncEnabled,
+                              @Value("${querydsl.count.async.threads:4}") int threads,
+                              @Value("${querydsl.count.bound:1000}") long countBound) {
+        this.ttlMillis = ttlMillis;
+        this.countBound = countBound;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) { // access order -> LRU
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, CachedCount> eldest) {
+                return size() > CountQueryExecutor.this.maxSize;
+            }
+        };
+        this.executor = asyncEnabled ? newExecutor(threads) : null;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(RepositoryMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 카운트 캐시 키. 조건은 정규화해서 넘겨야 같은 검색이 같은 키가 된다.
+     */
+    public static Object key(String queryName, Object normalizedCondition) {
+        return Arrays.asList(queryName, normalizedCondition);
+    }
+
+    /**
+     * @param cacheKey null 이면 캐시하지 않는다.
+     */
+    public <T> Page<T> getPage(Object cacheKey, Pageable pageable, Supplier<List<T>> contentQuery, LongSupplier countQuery) {
+        if (metrics.isEnabled()) {
+            contentQuery = timedContent(contentQuery);
+            countQuery = timedCount(countQuery);
+        }
+        LongSupplier timedCountQuery = countQuery;
+
+        Long cachedTotal = lookup(cacheKey);
+        if (cacheKey != null && ttlMillis > 0) {
+            metrics.recordCountCache(cachedTotal != null);
+        }
+        if (cachedTotal != null) {
+            return PageableExecutionUtils.getPage(contentQuery.get(), pageable, () -> cachedTotal);
+        }
+
+        LongSupplier cachingCountQuery = () -> {
+            long total = timedCountQuery.getAsLong();
+            store(cacheKey, total);
+            return total;
+        };
+        if (!canRunAsync()) {
+            return PageableExecutionUtils.getPage(contentQuery.get(), pageable, cachingCountQuery);
+        }
+
+        CompletableFuture<Long> countFuture = CompletableFuture.supplyAsync(cachingCountQuery::getAsLong, executor);
+        try {
+            List<T> content = contentQuery.get();
+            return PageableExecutionUtils.getPage(content, pageable, () -> join(countFuture));
+        } finally {
+            countFuture.cancel(false); // 카운트가 필요 없는 페이지(첫 페이지가 다 안찬 경우 등)
+        }
+    }
+
+    /**
+     * 카운트 전략을 고를 수 있는 페이지 조회. EXACT 면 getPage 와 같다.
+     *
+     * @param contentQuery   limit 을 받아 pageable 의 offset 부터 조회
+     * @param countQuery     정확한 total
+     * @param rowExistsAt    offset 을 받아 그 위치에 행이 있는지 (BOUNDED)
+     * @param estimateQuery  추정 total. 추정할 수 없으면 null 을 돌려준다. (ESTIMATED)
+     */
+    public <T> CountedPage<T> getCountedPage(Object cacheKey, Pageable pageable, CountStrategy strategy,
+                                             LongFunction<List<T>> contentQuery, LongSupplier countQuery,
+                                             LongPredicate rowExistsAt, Supplier<Long> estimateQuery) {
+        if (strategy == CountStrategy.EXACT) {
+            return CountedPage.of(getPage(cacheKey, pageable, () -> contentQuery.apply(pageable.getPageSize()), countQuery));
+        }
+
+        // 하나 더 가져와서 다음 페이지가 있는지 카운트 없이 안다.
+        int size = pageable.getPageSize();
+        long offset = pageable.getOffset();
+        List<T> rows = timedContent(() -> contentQuery.apply(size + 1L)).get();
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? new ArrayList<>(rows.subList(0, size)) : rows;
+        if (!hasNext && (!content.isEmpty() || offset == 0)) {
+            return new CountedPage<>(content, pageable, false, offset + content.size(), true, strategy); // 마지막 페이지
+        }
+        long atLeast = offset + content.size() + (hasNext ? 1 : 0);
+
+        if (strategy == CountStrategy.SLICE) {
+            return new CountedPage<>(content, pageable, hasNext, null, false, strategy);
+        }
+        if (strategy == CountStrategy.ESTIMATED) {
+            Long estimate = estimateQuery.get();
+            if (estimate != null) {
+                return new CountedPage<>(content, pageable, hasNext, Math.max(estimate, atLeast), false, strategy);
+            }
+        }
+
+        // BOUNDED (또는 추정 불가): bound 번째 행이 있으면 "bound+" 아니면 정확히 센다. 세는 행은 최대 bound 개
+        Long cachedTotal = lookup(cacheKey);
+        if (cachedTotal != null) {
+            return new CountedPage<>(content, pageable, hasNext, cachedTotal, true, CountStrategy.BOUNDED);
+        }
+        if (atLeast > countBound || rowExistsAt.test(countBound)) {
+            return new CountedPage<>(content, pageable, hasNext, Math.max(countBound, atLeast), false, CountStrategy.BOUNDED);
+        }
+        long total = timedCount(countQuery).getAsLong();
+        store(cacheKey, total);
+        return new CountedPage<>(content, pageable, hasNext, total, true, CountStrategy.BOUNDED);
+    }
+
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    // 변경 즉시 비우고, 커밋 전에 다른 스레드가 옛날 값을 다시 넣었을 수 있으니 트랜잭션이 끝날 때 한번 더 비운다.
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.isAbout(Member.class) || event.isAbout(Team.class)) {
+            invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION)
+    public void afterEntityChangeCompletion(EntityChangedEvent event) {
+        onEntityChanged(event);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Long lookup(Object cacheKey) {
+        if (cacheKey == null || ttlMillis <= 0) {
+            return null;
+        }
+        synchronized (cache) {
+            CachedCount cached = cache.get(cacheKey);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.expiresAt < System.currentTimeMillis()) {
+                cache.remove(cacheKey);
+                return null;
+            }
+            return cached.total;
+        }
+    }
+
+    private void store(Object cacheKey, long total) {
+        if (cacheKey == null || ttlMillis <= 0) {
+            return;
+        }
+        synchronized (cache) {
+            cache.put(cacheKey, new CachedCount(total, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private <T> Supplier<List<T>> timedContent(Supplier<List<T>> contentQuery) {
+        if (!metrics.isEnabled()) {
+            return contentQuery;
+        }
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return contentQuery.get();
+            } finally {
+                metrics.recordPageContent(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private LongSupplier timedCount(LongSupplier countQuery) {
+        if (!metrics.isEnabled()) {
+            return countQuery;
+        }
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return countQuery.getAsLong();
+            } finally {
+                metrics.recordPageCount(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private boolean canRunAsync() {
+        if (executor == null) {
+            return false;
+        }
+        boolean writeTransaction = TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return !writeTransaction;
+    }
+
+    private static long join(CompletableFuture<Long> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // 큐가 차면 호출한 스레드에서 실행한다. (= 동기 실행으로 자연스럽게 후퇴)
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "count-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static class CachedCount {
+        private final long total;
+        private final long expiresAt;
+
+        CachedCount(long total, long expiresAt) {
+            this.total = total;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package study.querydsl.repository.support;
+
+/**
+ * 페이지 total 을 어떻게 구할지. 요청마다 고른다. (CountQueryExecutor.getCountedPage)
+ * <p>
+ * 어느 전략이든 마지막 페이지(다음 행이 없는 페이지)는 total 을 쿼리 없이 정확히 안다.
+ */
+public enum CountStrategy {
+    /** 카운트 쿼리로 정확한 total (캐시됨) */
+    EXACT,
+    /** 카운트 없이 size + 1 개를 가져와서 다음 페이지가 있는지만 안다. 무한 스크롤용 */
+    SLICE,
+    /** querydsl.count.bound 개까지만 센다. 넘으면 "1000+" 처럼 하한만 알려준다. */
+    BOUNDED,
+    /** DB 통계의 행 수 추정치. 추정할 수 없으면(조건이 있는 검색 등) BOUNDED 로 간다. */
+    ESTIMATED;
+
+    public static CountStrategy from(String name) {
+        for (CountStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported count strategy: " + name);
+    }
+}
@@ -0,0 +1,48 @@
+package study.querydsl.repository.support;
+
+import lombok.Getter;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * CountStrategy 로 구한 페이지. total 이 없거나(SLICE) 하한/추정치(BOUNDED, ESTIMATED)일 수 있다.
+ */
+@Getter
+public class CountedPage<T> {
+    private final List<T> content;
+    private final int number;
+    private final int size;
+    private final boolean hasNext;
+    private final Long totalElements; // 모르면 null
+    private final boolean totalExact;
+    private final CountStrategy strategy;
+
+    public CountedPage(List<T> content, Pageable pageable, boolean hasNext, Long totalElements, boolean totalExact,
+                       CountStrategy strategy) {
+        this.content = content;
+        this.number = pageable.isPaged() ? pageable.getPageNumber() : 0;
+        this.size = pageable.isPaged() ? pageable.getPageSize() : content.size();
+        this.hasNext = hasNext;
+        this.totalElements = totalElements;
+        this.totalExact = totalExact;
+        this.strategy = strategy;
+    }
+
+    public static <T> CountedPage<T> of(Page<T> page) {
+        return new CountedPage<>(page.getContent(), page.getPageable(), page.hasNext(), page.getTotalElements(), true,
+                CountStrategy.EXACT);
+    }
+
+    // 화면 표시용. 예) 123, 1000+, ~12345
+    public String getTotalText() {
+        if (totalElements == null) {
+            return null;
+        }
+        if (totalExact) {
+            return String.valueOf(totalElements);
+        }
+        return strategy == CountStrategy.ESTIMATED ? "~" + totalElements : totalElements + "+";
+    }
+}
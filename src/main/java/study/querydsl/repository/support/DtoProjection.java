@@ -0,0 +1,115 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * 리플렉션 없이 행(Object[])을 DTO 로 바꾸는 프로젝션.
+ * <p>
+ * Projections.bean/fields/constructor 와 @QueryProjection(Q타입) 은 행마다 리플렉션으로 세터, 필드, 생성자를 호출한다.
+ * 이 프로젝션은 행을 받는 매퍼를 직접 호출하므로 결과가 많을 때 매핑 비용이 거의 없다.
+ * <pre>
+ * // 1. 매퍼를 직접 작성 (세터만 있는 DTO 도 가능)
+ * DtoProjection.of(UserDTO.class, row -> new UserDTO(...), member.username, member.age)
+ * // 2. 생성자를 찾아 시작할 때 한번 MethodHandle 로 만든다. 행마다 리플렉션 호출은 없다.
+ * DtoProjection.constructor(MemberDTO.class, member.username, member.age)
+ * </pre>
+ * 불변 객체라 static final 로 만들어두고 재사용하면 된다.
+ */
+public final class DtoProjection<T> extends FactoryExpressionBase<T> {
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(Object[] row);
+    }
+
+    private final List<Expression<?>> args;
+    private final RowMapper<T> mapper;
+
+    private DtoProjection(Class<? extends T> type, RowMapper<T> mapper, Expression<?>... args) {
+        super(type);
+        this.args = List.of(args);
+        this.mapper = mapper;
+    }
+
+    public static <T> DtoProjection<T> of(Class<? extends T> type, RowMapper<T> mapper, Expression<?>... args) {
+        return new DtoProjection<>(type, mapper, args);
+    }
+
+    /**
+     * args 타입에 맞는 public 생성자로 매퍼를 만든다. (Integer 인자 -> int 파라미터 같은 언박싱 허용)
+     *
+     * @throws IllegalArgumentException 맞는 생성자가 없을 때
+     */
+    public static <T> DtoProjection<T> constructor(Class<T> type, Expression<?>... args) {
+        MethodHandle handle = constructorHandle(type, args);
+        return new DtoProjection<>(type, row -> {
+            try {
+                return type.cast(handle.invokeExact(row));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }, args);
+    }
+
+    @Override
+    public T newInstance(Object... row) {
+        return mapper.map(row);
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+
+    // (Object[])Object 모양으로 맞춰둔다. 호출할 때 생성자 파라미터 타입으로 캐스팅/언박싱된다.
+    private static MethodHandle constructorHandle(Class<?> type, Expression<?>[] args) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (matches(constructor, args)) {
+                try {
+                    return MethodHandles.publicLookup().unreflectConstructor(constructor)
+                            .asSpreader(Object[].class, args.length)
+                            .asType(MethodType.methodType(Object.class, Object[].class));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalArgumentException("constructor not accessible: " + constructor, e);
+                }
+            }
+        }
+        throw new IllegalArgumentException("no public constructor of " + type.getName() + " for " + List.of(args));
+    }
+
+    private static boolean matches(Constructor<?> constructor, Expression<?>[] args) {
+        if (!Modifier.isPublic(constructor.getDeclaringClass().getModifiers())) {
+            return false;
+        }
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        if (parameterTypes.length != args.length) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            if (!wrap(parameterTypes[i]).isAssignableFrom(args[i].getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+}
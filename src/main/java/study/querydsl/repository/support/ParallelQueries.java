@@ -0,0 +1,242 @@
+package study.querydsl.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 서로 독립적인 조회 여러 개를 동시에 실행한다. 화면 응답 시간이 쿼리 시간의 합이 아니라 가장 느린 쿼리 시간이 된다.
+ * <pre>
+ * ParallelQueries.Batch batch = parallelQueries.batch();
+ * ParallelQueries.Result&lt;List&lt;MemberTeamDTO&gt;&gt; content = batch.submit("content", () -&gt; ...fetch());
+ * ParallelQueries.Result&lt;Long&gt; total = batch.submit("total", () -&gt; ...fetchOne());
+ * batch.join(FailurePolicy.PARTIAL);
+ * content.get(); total.orElse(null);
+ * </pre>
+ * 각 작업은 작업 스레드에서 새 읽기 전용 트랜잭션(REQUIRES_NEW)으로 실행된다.
+ * 그래서 작업마다 EntityManager 와 커넥션이 따로이고, 공유 EntityManager 를 쓰는 리포지토리 메서드를 그대로 호출해도 된다.
+ * 대신 호출한 쪽 트랜잭션의 flush 안된 변경은 보이지 않는다.
+ * <p>
+ * 타임아웃이 되면 작업 스레드를 interrupt 한다. JDBC 드라이버는 interrupt 에 반응하지 않을 수 있는데,
+ * 타임아웃은 트랜잭션 타임아웃(쿼리 타임아웃)으로도 걸리므로 그런 쿼리도 그 시간이 지나면 DB 에서 취소된다.
+ * <p>
+ * 풀과 큐가 가득 차면 작업을 실행하지 않고 FAILED(RejectedExecutionException) 로 둔다.
+ */
+@Component
+public class ParallelQueries {
+
+    public enum FailurePolicy {
+        FAIL_FAST, // 하나라도 실패/타임아웃이면 나머지를 취소하고 예외
+        PARTIAL // 실패한 것만 빼고 돌려준다. Result 로 성공 여부를 확인한다.
+    }
+
+    public enum Status {
+        SUCCESS, FAILED, TIMED_OUT
+    }
+
+    private final PlatformTransactionManager transactionManager;
+    private final long defaultTimeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public ParallelQueries(PlatformTransactionManager transactionManager,
+                           @Value("${querydsl.parallel.threads:8}") int threads,
+                           @Value("${querydsl.parallel.queue-capacity:100}") int queueCapacity,
+                           @Value("${querydsl.parallel.timeout-millis:3000}") long defaultTimeoutMillis) {
+        this.transactionManager = transactionManager;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        AtomicInteger sequence = new AtomicInteger();
+        // 큐가 차면 거절한다. 호출한 스레드에서 실행하면 타임아웃 없이 기다리게 된다.
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parallel-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public Batch batch() {
+        return new Batch(Duration.ofMillis(defaultTimeoutMillis));
+    }
+
+    public Batch batch(Duration timeout) {
+        return new Batch(timeout);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public class Batch {
+        private final Duration timeout;
+        private final TransactionTemplate transactionTemplate;
+        private final List<Result<?>> results = new ArrayList<>();
+
+        private Batch(Duration timeout) {
+            this.timeout = timeout;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            this.transactionTemplate.setReadOnly(true);
+            this.transactionTemplate.setTimeout((int) Math.max(1, (timeout.toMillis() + 999) / 1000));
+        }
+
+        public <T> Result<T> submit(String name, Supplier<T> query) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            Future<?> task = null;
+            try {
+                // CompletableFuture.cancel 은 작업 스레드를 interrupt 하지 않으므로 executor 의 Future 를 따로 들고 있는다.
+                task = executor.submit(() -> {
+                    try {
+                        future.complete(transactionTemplate.execute(status -> query.get()));
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+            Result<T> result = new Result<>(name, future, task);
+            results.add(result);
+            return result;
+        }
+
+        /**
+         * 전부 끝나거나 타임아웃이 될 때까지 기다린다. 그때까지 안 끝난 작업은 취소하고 TIMED_OUT 이 된다.
+         *
+         * @throws ParallelQueryException FAIL_FAST 에서 실패한 작업이 있을 때
+         */
+        public Batch join(FailurePolicy policy) {
+            CompletableFuture<?>[] futures = results.stream().map(result -> result.future).toArray(CompletableFuture[]::new);
+            CompletableFuture<?> waitFor = CompletableFuture.allOf(futures);
+            if (policy == FailurePolicy.FAIL_FAST) {
+                CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+                for (CompletableFuture<?> future : futures) {
+                    future.whenComplete((value, error) -> {
+                        if (error != null) {
+                            firstFailure.complete(null);
+                        }
+                    });
+                }
+                waitFor = CompletableFuture.anyOf(waitFor, firstFailure);
+            }
+
+            try {
+                waitFor.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // 개별 결과에서 처리
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            results.forEach(Result::complete);
+
+            if (policy == FailurePolicy.FAIL_FAST) {
+                // 실패한 작업 때문에 취소된 작업보다 실제 실패한 작업을 알려준다.
+                results.stream().filter(result -> result.getStatus() == Status.FAILED).findFirst()
+                        .or(() -> results.stream().filter(result -> !result.isSuccess()).findFirst())
+                        .ifPresent(result -> {
+                            throw result.failure();
+                        });
+            }
+            return this;
+        }
+
+        // 실패/타임아웃된 작업 이름
+        public List<String> getFailed() {
+            List<String> failed = new ArrayList<>();
+            for (Result<?> result : results) {
+                if (result.getStatus() != Status.SUCCESS) {
+                    failed.add(result.getName());
+                }
+            }
+            return failed;
+        }
+    }
+
+    public static class Result<T> {
+        private final String name;
+        private final CompletableFuture<T> future;
+        private final Future<?> task; // 거절됐으면 null
+        private Status status;
+        private T value;
+        private Throwable error;
+
+        private Result(String name, CompletableFuture<T> future, Future<?> task) {
+            this.name = name;
+            this.future = future;
+            this.task = task;
+        }
+
+        private void complete() {
+            if (!future.isDone()) {
+                task.cancel(true); // 실행 중이면 interrupt, 큐에서 기다리는 중이면 실행하지 않는다.
+                future.cancel(false);
+            }
+            try {
+                value = future.join();
+                status = Status.SUCCESS;
+            } catch (CancellationException e) {
+                status = Status.TIMED_OUT;
+                error = e;
+            } catch (CompletionException e) {
+                status = Status.FAILED;
+                error = e.getCause();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // join 전에는 null
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status == Status.SUCCESS;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @throws ParallelQueryException 성공하지 못한 작업일 때
+         */
+        public T get() {
+            if (!isSuccess()) {
+                throw failure();
+            }
+            return value;
+        }
+
+        public T orElse(T other) {
+            return isSuccess() ? value : other;
+        }
+
+        private ParallelQueryException failure() {
+            return new ParallelQueryException("parallel query '" + name + "' " + (status == null ? "not joined" : status), error);
+        }
+    }
+}
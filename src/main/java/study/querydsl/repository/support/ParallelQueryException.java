@@ -0,0 +1,7 @@
+package study.querydsl.repository.support;
+
+public class ParallelQueryException extends RuntimeException {
+    public ParallelQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -12,7 +12,6 @@ import org.springframework.data.jpa.repository.support.JpaEntityInformation;
 import org.springframework.data.jpa.repository.support.JpaEntityInformationSupport;
 import org.springframework.data.jpa.repository.support.Querydsl;
 import org.springframework.data.querydsl.SimpleEntityPathResolver;
-import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
 
@@ -30,6 +29,8 @@ public abstract class Querydsl4RepositorySupport {
     private Querydsl querydsl;
     private EntityManager entityManager;
     private JPAQueryFactory queryFactory;
+    private CountQueryExecutor countQueryExecutor;
+    private ParallelQueries parallelQueries;
 
     public Querydsl4RepositorySupport(Class<?> domainClass) {
         Assert.notNull(domainClass, "Domain class must not be null!");
@@ -47,11 +48,23 @@ public abstract class Querydsl4RepositorySupport {
         this.queryFactory = new JPAQueryFactory(entityManager);
     }
 
+    @Autowired
+    public void setCountQueryExecutor(CountQueryExecutor countQueryExecutor) {
+        this.countQueryExecutor = countQueryExecutor;
+    }
+
+    @Autowired
+    public void setParallelQueries(ParallelQueries parallelQueries) {
+        this.parallelQueries = parallelQueries;
+    }
+
     @PostConstruct
     public void validate() {
         Assert.notNull(entityManager, "EntityManager must not be null!");
         Assert.notNull(querydsl, "Querydsl must not be null!");
         Assert.notNull(queryFactory, "QueryFactory must not be null!");
+        Assert.notNull(countQueryExecutor, "CountQueryExecutor must not be null!");
+        Assert.notNull(parallelQueries, "ParallelQueries must not be null!");
     }
 
     protected JPAQueryFactory getQueryFactory() {
@@ -66,6 +79,14 @@ public abstract class Querydsl4RepositorySupport {
         return entityManager;
     }
 
+    /**
+     * 독립적인 쿼리 여러 개를 동시에 실행할 때 사용한다. 작업 안에서 getQueryFactory() 로 쿼리를 만들면
+     * 작업 스레드의 트랜잭션(EntityManager)으로 실행된다. ({@link ParallelQueries})
+     */
+    protected ParallelQueries.Batch parallel() {
+        return parallelQueries.batch();
+    }
+
     protected <T> JPAQuery<T> select(Expression<T> expr) {
         return getQueryFactory().select(expr);
     }
@@ -74,16 +95,42 @@ public abstract class Querydsl4RepositorySupport {
         return getQueryFactory().selectFrom(from);
     }
 
+    // 리플렉션 없는 DTO 프로젝션 ({@link DtoProjection}). 시작할 때 만들어 필드에 두고 쓴다.
+    protected static <T> DtoProjection<T> projection(Class<T> type, Expression<?>... args) {
+        return DtoProjection.constructor(type, args);
+    }
+
+    protected static <T> DtoProjection<T> projection(Class<? extends T> type, DtoProjection.RowMapper<T> mapper, Expression<?>... args) {
+        return DtoProjection.of(type, mapper, args);
+    }
+
+    // 조회 전용 ({@link ReadOnlyQuery}). 쓰기 트랜잭션 밖에서 읽은 엔티티는 변경 감지 대상이 아니다.
+    protected <T> JPAQuery<T> selectReadOnly(Expression<T> expr) {
+        return ReadOnlyQuery.hint(select(expr));
+    }
+
+    protected <T> JPAQuery<T> selectFromReadOnly(EntityPath<T> from) {
+        return ReadOnlyQuery.hint(selectFrom(from));
+    }
+
     protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery) {
-        JPAQuery jpaQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaQuery).fetch();
-        return PageableExecutionUtils.getPage(content, pageable, jpaQuery::fetchCount);
+        return applyPagination(pageable, null, contentQuery, contentQuery);
     }
 
     protected <T> Page<T> applyPagination(Pageable pageable, Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery) {
-        JPAQuery jpaContentQuery = contentQuery.apply(getQueryFactory());
-        List<T> content = getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch();
-        JPAQuery countResult = countQuery.apply(getQueryFactory());
-        return PageableExecutionUtils.getPage(content, pageable, countResult::fetchCount);
+        return applyPagination(pageable, null, contentQuery, countQuery);
+    }
+
+    /**
+     * @param countCacheKey 카운트 캐시 키 ({@link CountQueryExecutor#key}). null 이면 캐시하지 않는다.
+     */
+    protected <T> Page<T> applyPagination(Pageable pageable, Object countCacheKey, Function<JPAQueryFactory, JPAQuery> contentQuery, Function<JPAQueryFactory, JPAQuery> countQuery) {
+        // 카운트가 다른 스레드에서 돌 수 있으므로 콘텐츠와 카운트는 각각 쿼리 객체를 만든다.
+        // 페이징 조회는 읽기 경로라 조회 전용 힌트를 건다.
+        JPAQuery jpaContentQuery = ReadOnlyQuery.hint(contentQuery.apply(getQueryFactory()));
+        JPAQuery countResult = ReadOnlyQuery.hint(countQuery.apply(getQueryFactory()));
+        return countQueryExecutor.getPage(countCacheKey, pageable,
+                () -> (List<T>) getQuerydsl().applyPagination(pageable, jpaContentQuery).fetch(),
+                countResult::fetchCount);
     }
 }
@@ -0,0 +1,45 @@
+package study.querydsl.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * DB 통계에서 테이블 행 수 추정치를 읽는다. (querydsl.count.estimate-query)
+ * count(*) 와 달리 테이블을 훑지 않는다. 통계가 갱신된 시점의 값이라 정확하지 않다.
+ * <p>
+ * JdbcTemplate 으로 실행해서, 실패해도 진행중인 JPA 트랜잭션을 rollback-only 로 만들지 않는다.
+ */
+@Slf4j
+@Component
+public class TableRowEstimator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String estimateQuery;
+
+    public TableRowEstimator(JdbcTemplate jdbcTemplate,
+                             @Value("${querydsl.count.estimate-query:}") String estimateQuery) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.estimateQuery = estimateQuery;
+    }
+
+    /**
+     * @return 추정 행 수. 쿼리가 없거나 실패하면 null
+     */
+    public Long estimate(String table) {
+        if (!hasText(estimateQuery)) {
+            return null;
+        }
+        try {
+            Long estimate = jdbcTemplate.queryForObject(estimateQuery, Long.class, table);
+            return estimate != null && estimate >= 0 ? estimate : null; // postgres 는 통계가 없으면 -1
+        } catch (DataAccessException e) {
+            log.debug("row count estimate failed: {}", table, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// 검색은 전용 풀 스레드에서 실행되므로 @Transactional 을 붙이지 않고 커밋된 데이터로 확인한다.
+@SpringBootTest(properties = {
+        "querydsl.async.enabled=true",
+        "querydsl.async.queue-capacity=1",
+        "spring.datasource.hikari.maximum-pool-size=2"})
+@AutoConfigureMockMvc
+class MemberControllerTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MemberQueryExecutor memberQueryExecutor;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    public void asyncSearch() throws Exception {
+        String username = "async-" + UUID.randomUUID();
+        Member member = memberRepository.save(new Member(username, 10));
+        try {
+            MvcResult v1 = mockMvc.perform(get("/v1/members").param("username", username))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(v1))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].username").value(username));
+
+            MvcResult v3 = mockMvc.perform(get("/v3/members").param("username", username))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(v3))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content[0].username").value(username))
+                    .andExpect(jsonPath("$.totalElements").value(1));
+        } finally {
+            memberRepository.delete(member);
+        }
+    }
+
+    @Test
+    public void overloaded() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> blockers = new ArrayList<>();
+        try {
+            // 풀(커넥션 풀 크기 2)과 큐(1)를 채운다.
+            for (int i = 0; i < 3; i++) {
+                blockers.add(memberQueryExecutor.submit(() -> await(release)));
+            }
+
+            mockMvc.perform(get("/v1/members"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        } finally {
+            release.countDown();
+            CompletableFuture.allOf(blockers.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// H2 두개로 프라이머리/레플리카를 흉내낸다. 각 DB 의 route 테이블에 자기 이름이 들어있다.
+class ReadWriteRoutingDataSourceTest {
+
+    DataSource primary = database("routing-primary", ReadWriteRoutingDataSource.PRIMARY);
+    DataSource replica = database("routing-replica", ReadWriteRoutingDataSource.REPLICA);
+    ReplicaLagMonitor lagMonitor;
+
+    @AfterEach
+    public void after() {
+        lagMonitor.close();
+    }
+
+    @Test
+    public void readOnlyGoesToReplica() throws Exception {
+        lagMonitor = new ReplicaLagMonitor(replica, "", 1000);
+        lagMonitor.check();
+
+        assertThat(currentRoute(true)).isEqualTo(ReadWriteRoutingDataSource.REPLICA);
+        assertThat(currentRoute(false)).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToPrimary() throws Exception {
+        lagMonitor = new ReplicaLagMonitor(replica, "select 5000", 1000); // 5초 지연
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(currentRoute(true)).isEqualTo(ReadWriteRoutingDataSource.PRIMARY);
+    }
+
+    private String currentRoute(boolean readOnly) {
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica, lagMonitor, null);
+        routing.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return transactionTemplate.execute(status -> jdbcTemplate.queryForObject("select name from route", String.class));
+    }
+
+    private static DataSource database(String name, String route) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists route (name varchar(20))");
+        jdbcTemplate.update("delete from route");
+        jdbcTemplate.update("insert into route (name) values (?)", route);
+        return dataSource;
+    }
+}
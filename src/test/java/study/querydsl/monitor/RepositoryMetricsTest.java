@@ -0,0 +1,60 @@
+package study.querydsl.monitor;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.MemberJpaRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.metrics.enabled=true")
+@Transactional
+class RepositoryMetricsTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    RepositoryMetricsAspect repositoryMetricsAspect; // 지표를 켜면 등록된다.
+
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Test
+    public void searchIsTimed() throws Exception {
+        em.persist(new Member("metrics-member", 10));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername("metrics-member");
+        long timed = timedCount();
+        long rows = rowsCount();
+
+        memberJpaRepository.search(condition);
+
+        assertThat(timedCount()).isEqualTo(timed + 1);
+        assertThat(rowsCount()).isEqualTo(rows + 1);
+    }
+
+    private long timedCount() {
+        Timer timer = registry.find("querydsl.repository.query")
+                .tags("repository", "MemberJpaRepository", "method", "search", "shape", "username", "outcome", "success")
+                .timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private long rowsCount() {
+        DistributionSummary summary = registry.find("querydsl.repository.rows")
+                .tags("repository", "MemberJpaRepository", "method", "search")
+                .summary();
+        return summary == null ? 0 : summary.count();
+    }
+}
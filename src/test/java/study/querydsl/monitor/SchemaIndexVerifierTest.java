@@ -0,0 +1,20 @@
+package study.querydsl.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class SchemaIndexVerifierTest {
+
+    @Autowired
+    SchemaIndexVerifier schemaIndexVerifier;
+
+    // ddl-auto 로 만든 스키마에는 선언한 인덱스가 모두 있어야 한다.
+    @Test
+    public void declaredIndexesExist() throws Exception {
+        assertThat(schemaIndexVerifier.findMissingIndexes()).isEmpty();
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.monitor;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowQueryLogTest {
+
+    SlowQueryLog slowQueryLog = new SlowQueryLog(100, 0, 2, 10);
+
+    @AfterEach
+    public void after() {
+        slowQueryLog.shutdown();
+    }
+
+    @Test
+    public void onlySlowQueriesAreKept() throws Exception {
+        execute("select 1", 10);
+        execute("select 2", 150);
+        execute("select 3", 200);
+        execute("select 4", 300); // 버퍼 크기 2 -> select 2 는 밀려난다.
+
+        awaitRecorded(3);
+
+        List<SlowQuery> recent = slowQueryLog.recent();
+        assertThat(recent).extracting(SlowQuery::getElapsedMillis).containsExactly(300L, 200L);
+        assertThat(recent.get(0).getSql()).contains("select 4");
+        assertThat(slowQueryLog.getRecordedCount()).isEqualTo(3);
+    }
+
+    private void execute(String sql, long elapsedMillis) {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setElapsedTime(elapsedMillis);
+        executionInfo.setSuccess(true);
+        slowQueryLog.afterQuery(executionInfo, List.of(new QueryInfo(sql)));
+    }
+
+    private void awaitRecorded(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slowQueryLog.getRecordedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.monitor;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest
+@Transactional
+class SqlMonitorTest {
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        Team teamC = new Team("teamC");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(teamC);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamB));
+        em.persist(new Member("member3", 30, teamC));
+
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void detectLazyLoadingNPlusOne() throws Exception {
+        assertThatThrownBy(() -> {
+            try (SqlStatementScope scope = SqlMonitor.open("lazy", 3, SqlStatementScope.Action.FAIL)) {
+                List<Member> members = queryFactory.selectFrom(member).fetch();
+                for (Member m : members) {
+                    m.getTeam().getName(); // 팀마다 select 가 한번씩 나간다.
+                }
+                assertThat(scope.getStatementCount()).isEqualTo(4); // 1 + N
+                assertThat(scope.getLazyLoadCounts()).containsEntry("Team proxy", 3);
+            }
+        }).isInstanceOf(NPlusOneDetectedException.class)
+                .hasMessageContaining("Team proxy")
+                .hasMessageContaining(SqlMonitorTest.class.getName());
+    }
+
+    @Test
+    public void fetchJoinPasses() throws Exception {
+        try (SqlStatementScope scope = SqlMonitor.open("fetchJoin", 3, SqlStatementScope.Action.FAIL)) {
+            List<Member> members = queryFactory
+                    .selectFrom(member)
+                    .join(member.team, team).fetchJoin()
+                    .fetch();
+            for (Member m : members) {
+                m.getTeam().getName();
+            }
+            assertThat(scope.getStatementCount()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package study.querydsl.repository;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * 커밋된 팀/회원 테스트 데이터.
+ * <p>
+ * 메모리 캐시(회원 인덱스, 팀 통계, 스냅샷, 팀 이름 사전)는 커밋된 데이터만 보므로 @Transactional 대신 직접 커밋한다.
+ * 다른 테스트 데이터와 섞이지 않게 팀 이름은 매번 새로 만든다.
+ * 지울 때는 벌크 delete 후 MemberBulkOperations 처럼 BULK 이벤트를 발행해서 캐시에 지운 데이터가 남지 않게 한다.
+ */
+class CommittedTeamFixture {
+
+    private final EntityManager em;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher publisher;
+    private final List<Long> teamIds = new ArrayList<>();
+
+    CommittedTeamFixture(EntityManager em, PlatformTransactionManager transactionManager, ApplicationEventPublisher publisher) {
+        this.em = em;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.publisher = publisher;
+    }
+
+    TransactionTemplate tx() {
+        return tx;
+    }
+
+    List<Long> getTeamIds() {
+        return teamIds;
+    }
+
+    static String newTeamName(String prefix) {
+        return prefix + "-" + UUID.randomUUID();
+    }
+
+    // 팀을 만들고 같은 트랜잭션에서 회원을 추가한다.
+    Team createTeam(String teamName, BiConsumer<EntityManager, Team> members) {
+        Team created = tx.execute(status -> {
+            Team team = new Team(teamName);
+            em.persist(team);
+            members.accept(em, team);
+            em.flush();
+            return team;
+        });
+        track(created.getId());
+        return created;
+    }
+
+    // 다른 방법(SQL 등)으로 만든 팀도 같이 지운다.
+    void track(Long teamId) {
+        teamIds.add(teamId);
+    }
+
+    void cleanUp() {
+        if (teamIds.isEmpty()) {
+            return;
+        }
+        tx.executeWithoutResult(status -> {
+            em.createQuery("delete from Member m where m.team.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+            em.createQuery("delete from Team t where t.id in :teamIds").setParameter("teamIds", teamIds).executeUpdate();
+            publisher.publishEvent(EntityChangedEvent.bulk(Member.class));
+            publisher.publishEvent(EntityChangedEvent.bulk(Team.class));
+        });
+        teamIds.clear();
+    }
+}
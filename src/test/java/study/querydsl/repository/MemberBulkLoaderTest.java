@@ -0,0 +1,52 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberRow;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+@RecordApplicationEvents
+class MemberBulkLoaderTest {
+
+    @Autowired MemberBulkLoader memberBulkLoader;
+    @Autowired MemberJpaRepository memberJpaRepository;
+    @Autowired ApplicationEvents events;
+
+    @Test
+    public void load() throws Exception {
+        // chunk-size(1000) 보다 많이 넣어서 flush/clear 이후에도 팀 연관관계가 유지되는지 확인
+        MemberBulkLoader.Result result = memberBulkLoader.load(IntStream.range(0, 2500)
+                .mapToObj(i -> new MemberRow("bulk" + i, i % 100, i % 2 == 0 ? "bulkTeamA" : "bulkTeamB")));
+
+        assertThat(result.getRows()).isEqualTo(2500);
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("bulkTeamB");
+        List<MemberTeamDTO> teamB = memberJpaRepository.search(condition);
+        assertThat(teamB).hasSize(1250);
+        assertThat(teamB).extracting("teamId").containsOnly(teamB.get(0).getTeamId());
+
+        // 엔티티마다가 아니라 끝나고 BULK 이벤트만 한 번씩
+        assertThat(events.stream(EntityChangedEvent.class))
+                .extracting(EntityChangedEvent::getType)
+                .containsOnly(EntityChangedEvent.Type.BULK)
+                .hasSize(2);
+        assertThat(events.stream(EntityChangedEvent.class).filter(event -> event.isAbout(Member.class))).hasSize(1);
+        assertThat(events.stream(EntityChangedEvent.class).filter(event -> event.isAbout(Team.class))).hasSize(1);
+    }
+}
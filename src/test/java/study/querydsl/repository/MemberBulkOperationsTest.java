@@ -0,0 +1,69 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "querydsl.bulk.id-range=2")
+@Transactional
+class MemberBulkOperationsTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired MemberBulkOperations memberBulkOperations;
+
+    Member member1;
+    Member member4;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        member4 = new Member("member4", 40, teamB);
+        em.persist(member4);
+    }
+
+    @Test
+    public void addAge() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeLoe(20);
+
+        MemberBulkOperations.Result result = memberBulkOperations.addAge(condition, 1);
+
+        assertThat(result.getAffectedRows()).isEqualTo(2);
+        assertThat(result.getChunks()).hasSize(1); // member1 ~ member2 id 범위가 2개
+
+        // 벌크 연산 후에도 영속성 컨텍스트의 옛날 값이 아니라 DB 값을 읽어야 한다.
+        Member findMember = em.find(Member.class, member1.getId());
+        assertThat(findMember).isNotSameAs(member1);
+        assertThat(findMember.getAge()).isEqualTo(11);
+    }
+
+    @Test
+    public void deleteByTeamName() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamB");
+
+        MemberBulkOperations.Result result = memberBulkOperations.delete(condition);
+
+        assertThat(result.getAffectedRows()).isEqualTo(2);
+        assertThat(em.find(Member.class, member4.getId())).isNull();
+        assertThat(em.find(Member.class, member1.getId())).isNotNull();
+    }
+}
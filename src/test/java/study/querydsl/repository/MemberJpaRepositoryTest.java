@@ -1,5 +1,7 @@
 package study.querydsl.repository;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,7 +12,9 @@ import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -22,6 +26,9 @@ class MemberJpaRepositoryTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    EntityManagerFactory emf;
+
     @Autowired MemberJpaRepository memberJpaRepository;
 
     @Test
@@ -54,6 +61,23 @@ class MemberJpaRepositoryTest {
         assertThat(result2).containsExactly(member);
     }
 
+    @Test
+    public void updateLoadedInWriteTransaction() throws Exception {
+        memberJpaRepository.save(new Member("member1", 10));
+        memberJpaRepository.save(new Member("member2", 20));
+        em.flush();
+        em.clear();
+
+        // 쓰기 트랜잭션 안에서 읽은 엔티티는 읽기 전용 힌트 없이 변경 감지 대상이어야 한다.
+        memberJpaRepository.findByUsername("member1").get(0).setAge(11);
+        memberJpaRepository.findByUsername_Querydsl("member2").get(0).setAge(21);
+        em.flush();
+        em.clear();
+
+        assertThat(memberJpaRepository.findByUsername("member1")).extracting("age").containsExactly(11);
+        assertThat(memberJpaRepository.findByUsername_Querydsl("member2")).extracting("age").containsExactly(21);
+    }
+
     @Test
     public void searchTest() throws Exception {
         Team teamA = new Team("teamA");
@@ -87,4 +111,39 @@ class MemberJpaRepositoryTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void searchStatementCount() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.flush();
+        em.clear();
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        memberJpaRepository.search(new MemberSearchCondition());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void searchForEachTest() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, null));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(20);
+
+        List<MemberTeamDTO> result = new ArrayList<>();
+        long count = memberJpaRepository.searchForEach(condition, 2, result::add);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member2", "member3");
+    }
+
+}
@@ -0,0 +1,169 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 후에 반영되므로 직접 커밋한다. (CommittedTeamFixture) 회원 이름도 매번 새로 만든다.
+@SpringBootTest(properties = "querydsl.member-index.enabled=true")
+class MemberMemoryIndexTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    MemberMemoryIndex memberIndex;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    CommittedTeamFixture fixture;
+    TransactionTemplate tx;
+    String teamName;
+    String username;
+    Long teamId;
+    Long member1Id;
+    Long member2Id;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedTeamFixture(em, transactionManager, publisher);
+        tx = fixture.tx();
+        teamName = CommittedTeamFixture.newTeamName("index");
+        username = "member-" + UUID.randomUUID();
+        teamId = fixture.createTeam(teamName, (em, team) -> {
+            Member member1 = new Member(username, 10, team);
+            Member member2 = new Member("other", 20, team);
+            em.persist(member1);
+            em.persist(member2);
+            member1Id = member1.getId();
+            member2Id = member2.getId();
+        }).getId();
+        memberIndex.rebuild(); // 평소에는 조회가 member-index 스레드에 맡긴다.
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void searchByUsernameAndAge() throws Exception {
+        List<MemberTeamDTO> byUsername = search(username, null, null);
+        assertThat(byUsername).extracting("memberId").containsExactly(member1Id);
+        assertThat(byUsername.get(0).getTeamName()).isEqualTo(teamName);
+
+        assertThat(search(null, 15, 25)).extracting("memberId").containsExactly(member2Id);
+        assertThat(search(null, 10, null)).extracting("memberId").containsExactly(member1Id, member2Id);
+
+        // 리포지토리 검색도 같은 결과
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(10);
+        assertThat(memberRepository.search(condition)).extracting("memberId").containsExactly(member1Id, member2Id);
+    }
+
+    @Test
+    public void incrementalUpdate() throws Exception {
+        assertThat(search(null, 10, 10)).extracting("memberId").containsExactly(member1Id);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(50)); // 10 -> 50
+        assertThat(search(null, 10, 10)).isEmpty();
+        assertThat(search(null, 50, 50)).extracting("memberId").containsExactly(member1Id);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(10)); // 되돌려도 한 번만 나온다.
+        assertThat(search(null, 0, 100)).extracting("memberId").containsExactly(member1Id, member2Id);
+
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, member2Id)));
+        assertThat(search(null, 0, 100)).extracting("memberId").containsExactly(member1Id);
+    }
+
+    @Test
+    public void rollbackIsIgnored() throws Exception {
+        assertThat(search(username, null, null)).hasSize(1);
+
+        tx.executeWithoutResult(status -> {
+            em.find(Member.class, member1Id).setAge(99);
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertThat(search(null, 99, 99)).isEmpty();
+        assertThat(search(null, 10, 10)).extracting("memberId").containsExactly(member1Id);
+    }
+
+    @Test
+    public void writeTransactionGoesToDatabase() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        tx.executeWithoutResult(status -> assertThat(memberIndex.search(condition)).isEmpty());
+        assertThat(memberIndex.search(condition)).isPresent();
+    }
+
+    @Test
+    public void staleIndexGoesToDatabaseWhileRebuilding() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        memberIndex.invalidate();
+
+        assertThat(memberIndex.search(condition)).isEmpty();
+        assertThat(memberRepository.search(condition)).extracting("memberId").containsExactly(member1Id);
+
+        memberIndex.rebuild(); // 백그라운드에서 만드는 중이면 끝날 때까지 기다린다.
+        assertThat(search(username, null, null)).extracting("memberId").containsExactly(member1Id);
+    }
+
+    @Test
+    public void searchWithFields() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setFields(EnumSet.of(MemberTeamField.USERNAME, MemberTeamField.TEAM_ID));
+
+        // DB 로 조회할 때처럼 고르지 않은 필드는 비운다.
+        List<MemberTeamDTO> result = memberIndex.search(condition).orElseThrow();
+        assertThat(result).extracting("username").containsExactly(username);
+        assertThat(result).extracting("teamId").containsExactly(teamId);
+        assertThat(result).extracting("memberId").containsOnlyNulls();
+        assertThat(result).extracting("teamName").containsOnlyNulls();
+        assertThat(result).extracting("age").containsOnly(0);
+    }
+
+    @Test
+    public void stats() throws Exception {
+        search(username, null, null);
+        MemberMemoryIndex.Stats stats = memberIndex.getStats();
+        assertThat(stats.isStale()).isFalse();
+        assertThat(stats.getMembers()).isGreaterThanOrEqualTo(2);
+        assertThat(stats.getEstimatedBytes()).isGreaterThan(0);
+    }
+
+    private List<MemberTeamDTO> search(String username, Integer ageGoe, Integer ageLoe) {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setUsername(username);
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(ageGoe);
+        condition.setAgeLoe(ageLoe);
+        return memberIndex.search(condition).orElseThrow();
+    }
+}
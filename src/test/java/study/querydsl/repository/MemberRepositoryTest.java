@@ -1,5 +1,8 @@
 package study.querydsl.repository;
 
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -8,10 +11,17 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.dto.MemberTeamSliceDTO;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.support.CountStrategy;
+import study.querydsl.repository.support.CountedPage;
+import study.querydsl.repository.support.TableRowEstimator;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.EnumSet;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,7 +34,12 @@ public class MemberRepositoryTest {
     @Autowired
     EntityManager em;
 
+    @Autowired
+    EntityManagerFactory emf;
+
     @Autowired MemberRepository memberRepository;
+    @Autowired MemberSearchQueryCache searchQueryCache;
+    @Autowired TableRowEstimator tableRowEstimator;
 
     @Test
     public void basicTest() throws Exception {
@@ -73,6 +88,28 @@ public class MemberRepositoryTest {
 
     }
 
+    @Test
+    public void searchTemplateCacheTest() throws Exception {
+        Team teamB = new Team("teamB");
+        em.persist(teamB);
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setAgeGoe(30);
+        condition.setAgeLoe(40);
+        memberRepository.search(condition);
+        long hits = searchQueryCache.getStats().getHits();
+
+        // 같은 모양, 다른 값. ageGoe == ageLoe 여도 파라미터가 어긋나지 않아야 한다.
+        condition.setAgeGoe(40);
+        condition.setAgeLoe(40);
+        List<MemberTeamDTO> result = memberRepository.search(condition);
+
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(searchQueryCache.getStats().getHits()).isEqualTo(hits + 1);
+    }
+
     @Test
     public void searchSimpleTest() throws Exception {
         Team teamA = new Team("teamA");
@@ -104,6 +141,146 @@ public class MemberRepositoryTest {
 
     }
 
+    /**
+     * 검색 메서드 한번 호출에 콘텐츠 쿼리는 한번만 나가야 한다.
+     */
+    @Test
+    public void searchStatementCount() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 4; i++) {
+            em.persist(new Member("member" + i, i * 10, teamA));
+        }
+        em.flush();
+        em.clear();
+
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        MemberSearchCondition condition = new MemberSearchCondition();
+
+        statistics.clear();
+        memberRepository.search(condition);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        // 콘텐츠 + 카운트
+        statistics.clear();
+        memberRepository.searchPageSimple(condition, PageRequest.of(0, 3));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        statistics.clear();
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 3));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        // 첫 페이지가 다 안차면 카운트 쿼리 생략
+        statistics.clear();
+        memberRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void searchSliceTest() throws Exception {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        MemberTeamSliceDTO first = memberRepository.searchSlice(condition, null, 3);
+
+        assertThat(first.getContent()).extracting("username").containsExactly("member1", "member2", "member3");
+        assertThat(first.isHasNext()).isTrue();
+
+        // 커서로 이어서 조회
+        MemberTeamSliceDTO second = memberRepository.searchSlice(condition, first.getNextCursor(), 3);
+
+        assertThat(second.getContent()).extracting("username").containsExactly("member4");
+        assertThat(second.isHasNext()).isFalse();
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void searchWithFields() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+        condition.setFields(EnumSet.of(MemberTeamField.USERNAME));
+
+        // 컬럼 하나만 고른 경우
+        List<MemberTeamDTO> usernames = memberRepository.search(condition);
+        assertThat(usernames).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(usernames).extracting("memberId").containsOnlyNulls();
+        assertThat(usernames).extracting("teamName").containsOnlyNulls();
+
+        // 팀 id 는 조인 없이 외래 키로
+        condition.setTeamName(null);
+        condition.setFields(EnumSet.of(MemberTeamField.AGE, MemberTeamField.TEAM_ID));
+        Page<MemberTeamDTO> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting("age").containsExactlyInAnyOrder(10, 20);
+        assertThat(page.getContent()).extracting("teamId").containsOnly(teamA.getId());
+        assertThat(page.getContent()).extracting("username").containsOnlyNulls();
+
+        // 커서용 memberId 는 항상 들어간다.
+        MemberTeamSliceDTO slice = memberRepository.searchSlice(condition, null, 1);
+        assertThat(slice.getContent().get(0).getMemberId()).isNotNull();
+        assertThat(slice.getNextCursor()).isNotNull();
+    }
+
+    @Test
+    public void searchJoinOnlyWhenNeeded() throws Exception {
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        assertThat(MemberTeamQuerySpec.contentQuery(queryFactory, condition).toString()).contains("join");
+
+        condition.setFields(EnumSet.of(MemberTeamField.USERNAME, MemberTeamField.TEAM_ID));
+        assertThat(MemberTeamQuerySpec.contentQuery(queryFactory, condition).toString()).doesNotContain("join");
+
+        condition.setTeamName("teamA"); // 팀 이름으로 거르면 조인
+        assertThat(MemberTeamQuerySpec.contentQuery(queryFactory, condition).toString()).contains("join");
+
+        condition.setTeamName(null);
+        condition.setFields(EnumSet.of(MemberTeamField.TEAM_NAME));
+        assertThat(MemberTeamQuerySpec.contentQuery(queryFactory, condition).toString()).contains("join");
+    }
+
+    @Test
+    public void searchPageCounted() throws Exception {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        for (int i = 0; i < 4; i++) {
+            em.persist(new Member("member" + i, 10 + i, teamA));
+        }
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName("teamA");
+
+        CountedPage<MemberTeamDTO> slice = memberRepository.searchPageCounted(condition, PageRequest.of(0, 3), CountStrategy.SLICE);
+        assertThat(slice.getContent()).hasSize(3);
+        assertThat(slice.isHasNext()).isTrue();
+        assertThat(slice.getTotalElements()).isNull();
+
+        CountedPage<MemberTeamDTO> bounded = memberRepository.searchPageCounted(condition, PageRequest.of(0, 3), CountStrategy.BOUNDED);
+        assertThat(bounded.getTotalElements()).isEqualTo(4);
+        assertThat(bounded.isTotalExact()).isTrue();
+
+        // 조건이 없으면 DB 통계의 추정치. 추정치가 지금까지 본 행 수(3 + 다음 페이지 1)보다 작으면 본 행 수
+        CountedPage<MemberTeamDTO> estimated = memberRepository.searchPageCounted(new MemberSearchCondition(), PageRequest.of(0, 3),
+                CountStrategy.ESTIMATED);
+        Long estimate = tableRowEstimator.estimate("member");
+        assertThat(estimate).isNotNull();
+        assertThat(estimated.getStrategy()).isEqualTo(CountStrategy.ESTIMATED);
+        assertThat(estimated.getTotalElements()).isEqualTo(Math.max(estimate, 4));
+        assertThat(estimated.isTotalExact()).isFalse();
+    }
+
     @Test
     public void querydslPredicateExcutorTest() throws Exception {
         Iterable<Member> member1 = memberRepository.findAll(member.age.between(10, 40).and(member.username.eq("member1")));
@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.dto.MemberTeamField;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 스냅샷은 커밋된 데이터로 만들므로 직접 커밋한다. (CommittedTeamFixture)
+@SpringBootTest(properties = "querydsl.snapshot.enabled=true")
+class MemberSnapshotTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    MemberSnapshot memberSnapshot;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    CommittedTeamFixture fixture;
+    TransactionTemplate tx;
+    String teamName;
+    Long teamId;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedTeamFixture(em, transactionManager, publisher);
+        tx = fixture.tx();
+        teamName = CommittedTeamFixture.newTeamName("snapshot");
+        teamId = fixture.createTeam(teamName, (em, team) -> {
+            for (int i = 0; i < 5; i++) {
+                em.persist(new Member("회원" + i, 10 + i, team)); // UTF-8 여러 바이트 이름
+            }
+        }).getId();
+        memberSnapshot.refresh();
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void search() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(12);
+        List<MemberTeamDTO> result = memberSnapshot.search(condition).orElseThrow();
+        assertThat(result).extracting("username").containsExactly("회원2", "회원3", "회원4");
+        assertThat(result).extracting("teamId").containsOnly(teamId);
+        assertThat(result).extracting("teamName").containsOnly(teamName);
+
+        condition.setUsername("회원3");
+        assertThat(memberSnapshot.search(condition).orElseThrow()).extracting("age").containsExactly(13);
+
+        condition.setTeamName("no-such-team-" + UUID.randomUUID());
+        assertThat(memberSnapshot.search(condition).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    public void searchPage() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+
+        Page<MemberTeamDTO> page = memberRepository.searchPageComplex(condition, PageRequest.of(1, 2));
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getContent()).extracting("username").containsExactly("회원2", "회원3");
+    }
+
+    @Test
+    public void searchWithFields() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setFields(EnumSet.of(MemberTeamField.AGE, MemberTeamField.TEAM_NAME));
+
+        // DB 로 조회할 때처럼 고르지 않은 필드는 비운다.
+        List<MemberTeamDTO> result = memberSnapshot.search(condition).orElseThrow();
+        assertThat(result).extracting("age").containsExactly(10, 11, 12, 13, 14);
+        assertThat(result).extracting("teamName").containsOnly(teamName);
+        assertThat(result).extracting("memberId").containsOnlyNulls();
+        assertThat(result).extracting("username").containsOnlyNulls();
+        assertThat(result).extracting("teamId").containsOnlyNulls();
+
+        Page<MemberTeamDTO> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 2));
+        assertThat(page.getContent()).extracting("username").containsOnlyNulls();
+        assertThat(page.getTotalElements()).isEqualTo(5);
+    }
+
+    @Test
+    public void refreshOnlyWhenChanged() throws Exception {
+        assertThat(memberSnapshot.refresh()).isFalse();
+
+        tx.executeWithoutResult(status -> em.persist(new Member("회원5", 15, em.find(Team.class, teamId))));
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        assertThat(memberSnapshot.search(condition).orElseThrow()).hasSize(5); // 다시 만들기 전까지는 이전 스냅샷
+
+        assertThat(memberSnapshot.refresh()).isTrue();
+        assertThat(memberSnapshot.search(condition).orElseThrow()).hasSize(6);
+        assertThat(memberSnapshot.getStats().getFileBytes()).isGreaterThan(0);
+    }
+
+    @Test
+    public void refreshWhenInsertedWithoutEvent() throws Exception {
+        assertThat(memberSnapshot.refresh()).isFalse();
+
+        // 다른 서버나 SQL 로 넣은 회원은 이벤트가 없지만 DB 행 수가 바뀌었으므로 다시 만든다.
+        Long memberId = jdbcTemplate.queryForObject("select coalesce(min(member_id), 0) - 1 from member", Long.class);
+        jdbcTemplate.update("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", memberId, "sqlMember", 20, teamId);
+
+        assertThat(memberSnapshot.refresh()).isTrue();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        assertThat(memberSnapshot.search(condition).orElseThrow()).hasSize(6);
+    }
+
+    @Test
+    public void writeTransactionGoesToDatabase() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        tx.executeWithoutResult(status -> assertThat(memberSnapshot.search(condition)).isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+// 2차 캐시는 EntityManager(영속성 컨텍스트) 사이에서 공유되므로 @Transactional 을 붙이지 않고 EntityManager 를 따로 연다.
+@SpringBootTest(properties = "querydsl.l2-cache.enabled=true")
+class SecondLevelCacheTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    TransactionTemplate tx;
+    Statistics statistics;
+    Long memberId;
+
+    @BeforeEach
+    public void before() {
+        tx = new TransactionTemplate(transactionManager);
+        memberId = tx.execute(status -> {
+            Member saved = new Member("cached-" + UUID.randomUUID(), 10);
+            em.persist(saved);
+            return saved.getId();
+        });
+        emf.getCache().evict(Member.class, memberId); // 저장할 때 캐시에 들어가므로 비우고 시작한다.
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    public void after() {
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, memberId)));
+    }
+
+    @Test
+    public void hitAcrossEntityManagers() throws Exception {
+        long misses = region().getMissCount();
+        long puts = region().getPutCount();
+        assertThat(findInNewEntityManager().getAge()).isEqualTo(10); // 미스 -> DB 조회 후 캐시에 넣는다.
+        assertThat(region().getMissCount()).isEqualTo(misses + 1);
+        assertThat(region().getPutCount()).isEqualTo(puts + 1);
+
+        long hits = region().getHitCount();
+        long statements = statistics.getPrepareStatementCount();
+        assertThat(findInNewEntityManager().getAge()).isEqualTo(10); // 다른 EntityManager 지만 캐시에서 온다.
+        assertThat(region().getHitCount()).isEqualTo(hits + 1);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(statements);
+    }
+
+    @Test
+    public void bulkUpdateEvicts() throws Exception {
+        findInNewEntityManager();
+        assertThat(emf.getCache().contains(Member.class, memberId)).isTrue();
+
+        // QuerydslBasicTest.bulkUpdate 처럼 벌크 update 는 캐시를 거치지 않으므로 하이버네이트가 리전을 비운다.
+        tx.executeWithoutResult(status -> new JPAQueryFactory(em)
+                .update(member)
+                .set(member.age, member.age.add(1))
+                .where(member.id.eq(memberId))
+                .execute());
+
+        assertThat(emf.getCache().contains(Member.class, memberId)).isFalse();
+        assertThat(findInNewEntityManager().getAge()).isEqualTo(11);
+    }
+
+    private CacheRegionStatistics region() {
+        return statistics.getCacheRegionStatistics("member");
+    }
+
+    private Member findInNewEntityManager() {
+        EntityManager other = emf.createEntityManager();
+        try {
+            return other.find(Member.class, memberId);
+        } finally {
+            other.close();
+        }
+    }
+}
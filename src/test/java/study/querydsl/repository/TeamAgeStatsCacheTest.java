@@ -0,0 +1,110 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.TeamAgeStatsDTO;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 후에 반영되므로 직접 커밋한다. (CommittedTeamFixture)
+@SpringBootTest
+class TeamAgeStatsCacheTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    TeamAgeStatsCache teamAgeStatsCache;
+
+    CommittedTeamFixture fixture;
+    TransactionTemplate tx;
+    String teamName;
+    Long teamId;
+    Long member1Id;
+    Long member2Id;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedTeamFixture(em, transactionManager, publisher);
+        tx = fixture.tx();
+        teamName = CommittedTeamFixture.newTeamName("stats");
+        teamId = fixture.createTeam(teamName, (em, team) -> {
+            Member member1 = new Member("member1", 10, team);
+            Member member2 = new Member("member2", 20, team);
+            em.persist(member1);
+            em.persist(member2);
+            member1Id = member1.getId();
+            member2Id = member2.getId();
+        }).getId();
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void incrementalUpdate() throws Exception {
+        assertStats(2, 30, 20, 10);
+
+        tx.executeWithoutResult(status -> em.find(Member.class, member1Id).setAge(50)); // 10 -> 50
+        assertStats(2, 70, 50, 20);
+
+        tx.executeWithoutResult(status -> em.remove(em.find(Member.class, member2Id)));
+        assertStats(1, 50, 50, 50);
+
+        tx.executeWithoutResult(status -> em.persist(new Member("member3", 5, em.find(Team.class, teamId))));
+        assertStats(2, 55, 50, 5);
+    }
+
+    @Test
+    public void rollbackIsIgnored() throws Exception {
+        assertStats(2, 30, 20, 10);
+
+        tx.executeWithoutResult(status -> {
+            em.find(Member.class, member1Id).setAge(99);
+            em.flush();
+            status.setRollbackOnly();
+        });
+
+        assertStats(2, 30, 20, 10);
+    }
+
+    @Test
+    public void bulkUpdateRecomputes() throws Exception {
+        assertStats(2, 30, 20, 10);
+
+        tx.executeWithoutResult(status -> {
+            em.createQuery("update Member m set m.age = m.age + 1 where m.team.id = :teamId")
+                    .setParameter("teamId", teamId)
+                    .executeUpdate();
+        });
+        teamAgeStatsCache.invalidate(); // 벌크 연산은 MemberBulkOperations 가 BULK 이벤트를 발행한다.
+
+        assertStats(2, 32, 21, 11);
+    }
+
+    private void assertStats(long count, long sum, int max, int min) {
+        TeamAgeStatsDTO stats = teamAgeStatsCache.find(teamName);
+        assertThat(stats.getCount()).isEqualTo(count);
+        assertThat(stats.getSum()).isEqualTo(sum);
+        assertThat(stats.getMax()).isEqualTo(max);
+        assertThat(stats.getMin()).isEqualTo(min);
+        assertThat(stats.getAvg()).isEqualTo((double) sum / count);
+    }
+}
@@ -0,0 +1,154 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDTO;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 사전은 커밋된 팀만 보므로 직접 커밋한다. (CommittedTeamFixture)
+@SpringBootTest
+class TeamNameDictionaryTest {
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher publisher;
+
+    @Autowired
+    TeamNameDictionary teamNameDictionary;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    CommittedTeamFixture fixture;
+    TransactionTemplate tx;
+    String teamName;
+    List<Long> teamIds;
+
+    @BeforeEach
+    public void before() {
+        fixture = new CommittedTeamFixture(em, transactionManager, publisher);
+        tx = fixture.tx();
+        teamIds = fixture.getTeamIds();
+        teamName = CommittedTeamFixture.newTeamName("dictionary");
+        fixture.createTeam(teamName, (em, team) -> {
+            for (int i = 0; i < 3; i++) {
+                em.persist(new Member("member" + i, 10 + i, team));
+            }
+        });
+        teamNameDictionary.reload(); // 평소에는 team-dictionary 스레드가 읽는다.
+    }
+
+    @AfterEach
+    public void after() {
+        fixture.cleanUp();
+    }
+
+    @Test
+    public void resolve() throws Exception {
+        assertThat(teamNameDictionary.resolve(teamName)).containsExactlyElementsOf(teamIds);
+        assertThat(teamNameDictionary.resolve("no-such-team-" + UUID.randomUUID())).isNull(); // 사전에 없으면 조인으로 거른다.
+        assertThat(teamNameDictionary.resolve(null)).isNull();
+
+        // 쓰기 트랜잭션 안에서는 조인으로 거른다.
+        tx.executeWithoutResult(status -> assertThat(teamNameDictionary.resolve(teamName)).isNull());
+    }
+
+    @Test
+    public void joinWhileReloading() throws Exception {
+        teamNameDictionary.invalidate();
+
+        // 조회하는 쪽은 기다리지 않고 조인으로 거른다. 사전은 뒤에서 다시 읽는다.
+        assertThat(teamNameDictionary.resolve(teamName)).isNull();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        assertThat(memberRepository.search(condition)).hasSize(3);
+
+        teamNameDictionary.reload(); // 뒤에서 읽는 중이면 끝날 때까지 기다린다.
+        assertThat(teamNameDictionary.resolve(teamName)).containsExactlyElementsOf(teamIds);
+    }
+
+    @Test
+    public void sameNameTeams() throws Exception {
+        assertThat(teamNameDictionary.resolve(teamName)).hasSize(1);
+
+        fixture.createTeam(teamName, (em, team) -> em.persist(new Member("member3", 13, team)));
+
+        assertThat(teamNameDictionary.resolve(teamName)).containsExactlyInAnyOrderElementsOf(teamIds);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        assertThat(memberRepository.search(condition)).hasSize(4);
+    }
+
+    @Test
+    public void teamInsertedWithoutEvent() throws Exception {
+        assertThat(teamNameDictionary.resolve(teamName)).isNotNull();
+
+        // JPA 이벤트 없이 SQL 로 넣은 팀은 사전이 모르지만 검색에는 나와야 한다.
+        String sqlTeamName = "dictionary-sql-" + UUID.randomUUID();
+        Long teamId = jdbcTemplate.queryForObject("select coalesce(min(id), 0) - 1 from team", Long.class);
+        Long memberId = jdbcTemplate.queryForObject("select coalesce(min(member_id), 0) - 1 from member", Long.class);
+        jdbcTemplate.update("insert into team (id, name) values (?, ?)", teamId, sqlTeamName);
+        jdbcTemplate.update("insert into member (member_id, username, age, team_id) values (?, ?, ?, ?)", memberId, "sqlMember", 20, teamId);
+        fixture.track(teamId);
+
+        assertThat(teamNameDictionary.resolve(sqlTeamName)).isNull();
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(sqlTeamName);
+        assertThat(memberRepository.search(condition)).extracting("username").containsExactly("sqlMember");
+    }
+
+    @Test
+    public void search() throws Exception {
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+        condition.setAgeGoe(11);
+
+        List<MemberTeamDTO> result = memberRepository.search(condition);
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+        assertThat(result).extracting("teamName").containsOnly(teamName);
+
+        Page<MemberTeamDTO> page = memberRepository.searchPageComplex(condition, PageRequest.of(0, 1));
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).hasSize(1);
+
+        condition.setTeamName("no-such-team-" + UUID.randomUUID());
+        assertThat(memberRepository.search(condition)).isEmpty();
+        assertThat(memberRepository.searchPageComplex(condition, PageRequest.of(0, 1)).getTotalElements()).isZero();
+    }
+
+    @Test
+    public void countQueryWithoutJoin() throws Exception {
+        JPAQueryFactory queryFactory = new JPAQueryFactory(em);
+        MemberSearchCondition condition = new MemberSearchCondition();
+        condition.setTeamName(teamName);
+
+        assertThat(MemberTeamQuerySpec.countQuery(queryFactory, condition).toString()).contains("join");
+        assertThat(MemberTeamQuerySpec.countQuery(queryFactory, condition, Arrays.asList(1L, 2L)).toString()).doesNotContain("join");
+        assertThat(MemberTeamQuerySpec.countQuery(queryFactory, new MemberSearchCondition()).toString()).doesNotContain("join");
+    }
+}
@@ -0,0 +1,116 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.entity.EntityChangedEvent;
+import study.querydsl.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountQueryExecutorTest {
+
+    CountQueryExecutor executor = new CountQueryExecutor(30000, 10, false, 1, 100);
+
+    @Test
+    public void cachedCount() throws Exception {
+        AtomicInteger countCalls = new AtomicInteger();
+        Object key = CountQueryExecutor.key("test", "condition");
+
+        Page<String> first = executor.getPage(key, PageRequest.of(0, 2), () -> List.of("a", "b"), () -> {
+            countCalls.incrementAndGet();
+            return 10;
+        });
+        Page<String> second = executor.getPage(key, PageRequest.of(1, 2), () -> List.of("c", "d"), () -> {
+            countCalls.incrementAndGet();
+            return 10;
+        });
+
+        assertThat(first.getTotalElements()).isEqualTo(10);
+        assertThat(second.getTotalElements()).isEqualTo(10);
+        assertThat(countCalls.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidateOnMemberChange() throws Exception {
+        AtomicInteger countCalls = new AtomicInteger();
+        Object key = CountQueryExecutor.key("test", "condition");
+
+        executor.getPage(key, PageRequest.of(0, 2), () -> List.of("a", "b"), () -> countCalls.incrementAndGet() + 10);
+        executor.onEntityChanged(new EntityChangedEvent(new Member("member1"), EntityChangedEvent.Type.PERSIST));
+        Page<String> page = executor.getPage(key, PageRequest.of(0, 2), () -> List.of("a", "b"), () -> countCalls.incrementAndGet() + 10);
+
+        assertThat(countCalls.get()).isEqualTo(2);
+        assertThat(page.getTotalElements()).isEqualTo(12);
+    }
+
+    @Test
+    public void asyncCount() throws Exception {
+        CountQueryExecutor asyncExecutor = new CountQueryExecutor(0, 10, true, 2, 100);
+        try {
+            Page<String> page = asyncExecutor.getPage(null, PageRequest.of(0, 2), () -> List.of("a", "b"), () -> 7);
+            assertThat(page.getTotalElements()).isEqualTo(7);
+        } finally {
+            asyncExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void sliceSkipsCount() throws Exception {
+        CountedPage<String> page = executor.getCountedPage(null, PageRequest.of(1, 2), CountStrategy.SLICE,
+                limit -> List.of("c", "d", "e").subList(0, (int) limit), () -> {
+                    throw new AssertionError("count query");
+                }, offset -> false, () -> null);
+
+        assertThat(page.getContent()).containsExactly("c", "d");
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.getTotalElements()).isNull();
+    }
+
+    @Test
+    public void lastPageIsExactWithoutCount() throws Exception {
+        CountedPage<String> page = executor.getCountedPage(null, PageRequest.of(2, 2), CountStrategy.SLICE,
+                limit -> List.of("e"), () -> {
+                    throw new AssertionError("count query");
+                }, offset -> false, () -> null);
+
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.isTotalExact()).isTrue();
+    }
+
+    @Test
+    public void boundedCount() throws Exception {
+        AtomicInteger countCalls = new AtomicInteger();
+
+        // 100 번째 행이 있으면 세지 않는다.
+        CountedPage<String> over = executor.getCountedPage(null, PageRequest.of(0, 2), CountStrategy.BOUNDED,
+                limit -> List.of("a", "b", "c"), () -> countCalls.incrementAndGet() + 1000, offset -> offset == 100, () -> null);
+        assertThat(over.getTotalElements()).isEqualTo(100);
+        assertThat(over.getTotalText()).isEqualTo("100+");
+        assertThat(countCalls.get()).isZero();
+
+        CountedPage<String> under = executor.getCountedPage(null, PageRequest.of(0, 2), CountStrategy.BOUNDED,
+                limit -> List.of("a", "b", "c"), () -> countCalls.incrementAndGet() + 10, offset -> false, () -> null);
+        assertThat(under.getTotalElements()).isEqualTo(11);
+        assertThat(under.getTotalText()).isEqualTo("11");
+    }
+
+    @Test
+    public void estimatedCount() throws Exception {
+        CountedPage<String> estimated = executor.getCountedPage(null, PageRequest.of(0, 2), CountStrategy.ESTIMATED,
+                limit -> List.of("a", "b", "c"), () -> 10, offset -> false, () -> 5000L);
+        assertThat(estimated.getTotalText()).isEqualTo("~5000");
+        assertThat(estimated.isTotalExact()).isFalse();
+
+        // 추정할 수 없으면 BOUNDED
+        CountedPage<String> fallback = executor.getCountedPage(null, PageRequest.of(0, 2), CountStrategy.ESTIMATED,
+                limit -> List.of("a", "b", "c"), () -> 10, offset -> false, () -> null);
+        assertThat(fallback.getStrategy()).isEqualTo(CountStrategy.BOUNDED);
+        assertThat(fallback.getTotalElements()).isEqualTo(10);
+        assertThat(fallback.isTotalExact()).isTrue();
+    }
+}
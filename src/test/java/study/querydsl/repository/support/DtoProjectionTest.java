@@ -0,0 +1,80 @@
+package study.querydsl.repository.support;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberDTO;
+import study.querydsl.dto.UserDTO;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class DtoProjectionTest {
+    @Autowired
+    EntityManager em;
+
+    JPAQueryFactory queryFactory;
+
+    @BeforeEach
+    public void before() {
+        queryFactory = new JPAQueryFactory(em);
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+    }
+
+    @Test
+    public void constructorProjection() throws Exception {
+        // Integer 인자 -> int 파라미터 생성자
+        DtoProjection<MemberDTO> projection = DtoProjection.constructor(MemberDTO.class, member.username, member.age);
+
+        List<MemberDTO> result = queryFactory
+                .select(projection)
+                .from(member)
+                .orderBy(member.username.asc())
+                .fetch();
+
+        assertThat(result).extracting("username", "age")
+                .containsExactly(tuple("member1", 10), tuple("member2", 20));
+    }
+
+    @Test
+    public void mapperProjection() throws Exception {
+        // 세터만 있는 DTO 는 매퍼를 직접 작성한다. (Projections.fields + as("name") 대신)
+        DtoProjection<UserDTO> projection = DtoProjection.of(UserDTO.class, row -> {
+            UserDTO userDTO = new UserDTO();
+            userDTO.setName((String) row[0]);
+            userDTO.setAge((Integer) row[1]);
+            return userDTO;
+        }, member.username, member.age);
+
+        List<UserDTO> result = queryFactory
+                .select(projection)
+                .from(member)
+                .where(member.username.eq("member2"))
+                .fetch();
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getName()).isEqualTo("member2");
+        assertThat(result.get(0).getAge()).isEqualTo(20);
+    }
+
+    @Test
+    public void noMatchingConstructor() throws Exception {
+        assertThatThrownBy(() -> DtoProjection.constructor(MemberDTO.class, member.age, member.username))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,129 @@
+package study.querydsl.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 작업마다 새 트랜잭션이 열리므로 테스트 클래스에 @Transactional 을 붙이지 않는다.
+@SpringBootTest
+class ParallelQueriesTest {
+
+    @Autowired
+    ParallelQueries parallelQueries;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    public void runsInParallelReadOnlyTransactions() throws Exception {
+        ParallelQueries.Batch batch = parallelQueries.batch();
+        ParallelQueries.Result<Boolean> first = batch.submit("first", () -> sleepAndCheckReadOnly(300));
+        ParallelQueries.Result<Boolean> second = batch.submit("second", () -> sleepAndCheckReadOnly(300));
+
+        long start = System.nanoTime();
+        batch.join(ParallelQueries.FailurePolicy.FAIL_FAST);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(first.get()).isTrue();
+        assertThat(second.get()).isTrue();
+        assertThat(elapsedMillis).isLessThan(600); // 합이 아니라 max
+    }
+
+    @Test
+    public void partialFailure() throws Exception {
+        ParallelQueries.Batch batch = parallelQueries.batch(Duration.ofMillis(500));
+        ParallelQueries.Result<String> ok = batch.submit("ok", () -> "ok");
+        ParallelQueries.Result<String> failed = batch.submit("failed", () -> {
+            throw new IllegalStateException("boom");
+        });
+        ParallelQueries.Result<Boolean> slow = batch.submit("slow", () -> sleepAndCheckReadOnly(3000));
+
+        batch.join(ParallelQueries.FailurePolicy.PARTIAL);
+
+        assertThat(ok.get()).isEqualTo("ok");
+        assertThat(failed.getStatus()).isEqualTo(ParallelQueries.Status.FAILED);
+        assertThat(failed.getError()).isInstanceOf(IllegalStateException.class);
+        assertThat(slow.getStatus()).isEqualTo(ParallelQueries.Status.TIMED_OUT);
+        assertThat(slow.orElse(false)).isFalse();
+        assertThat(batch.getFailed()).containsExactly("failed", "slow");
+    }
+
+    @Test
+    public void failFast() throws Exception {
+        ParallelQueries.Batch batch = parallelQueries.batch(Duration.ofSeconds(5));
+        batch.submit("slow", () -> sleepAndCheckReadOnly(3000));
+        batch.submit("failed", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> batch.join(ParallelQueries.FailurePolicy.FAIL_FAST))
+                .isInstanceOf(ParallelQueryException.class)
+                .hasMessageContaining("failed")
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(3000); // slow 를 기다리지 않는다.
+    }
+
+    @Test
+    public void timedOutTaskIsInterrupted() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+        ParallelQueries.Batch batch = parallelQueries.batch(Duration.ofMillis(200));
+        ParallelQueries.Result<Boolean> slow = batch.submit("slow", () -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            } finally {
+                finished.countDown();
+            }
+            return true;
+        });
+
+        batch.join(ParallelQueries.FailurePolicy.PARTIAL);
+
+        assertThat(slow.getStatus()).isEqualTo(ParallelQueries.Status.TIMED_OUT);
+        assertThat(finished.await(2, TimeUnit.SECONDS)).isTrue(); // 5초를 다 기다리지 않는다.
+        assertThat(interrupted).isTrue();
+    }
+
+    @Test
+    public void rejectedWhenFull() throws Exception {
+        ParallelQueries small = new ParallelQueries(transactionManager, 1, 1, 1000);
+        try {
+            ParallelQueries.Batch batch = small.batch(Duration.ofMillis(300));
+            ParallelQueries.Result<Boolean> running = batch.submit("running", () -> sleepAndCheckReadOnly(3000));
+            ParallelQueries.Result<Boolean> queued = batch.submit("queued", () -> sleepAndCheckReadOnly(3000));
+            ParallelQueries.Result<Boolean> rejected = batch.submit("rejected", () -> true);
+
+            batch.join(ParallelQueries.FailurePolicy.PARTIAL);
+
+            assertThat(running.getStatus()).isEqualTo(ParallelQueries.Status.TIMED_OUT);
+            assertThat(queued.getStatus()).isEqualTo(ParallelQueries.Status.TIMED_OUT);
+            assertThat(rejected.getStatus()).isEqualTo(ParallelQueries.Status.FAILED); // 호출한 스레드에서 실행하지 않는다.
+            assertThat(rejected.getError()).isInstanceOf(RejectedExecutionException.class);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    private static boolean sleepAndCheckReadOnly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+}